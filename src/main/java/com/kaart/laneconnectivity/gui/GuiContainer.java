@@ -11,6 +11,7 @@ import java.awt.Stroke;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -18,8 +19,10 @@ import java.util.Map;
 
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 
+import com.kaart.laneconnectivity.model.Distance;
 import com.kaart.laneconnectivity.model.Junction;
 import com.kaart.laneconnectivity.model.Lane;
 import com.kaart.laneconnectivity.model.ModelContainer;
@@ -59,7 +62,7 @@ public class GuiContainer {
                 .eastNorth2latlon(new EastNorth(origin.getX() + 1, origin.getY() + 1));
 
         // meters per source unit
-        final double mpsu = relCoor.greatCircleDistance(originCoor) / sqrt(2);
+        final double mpsu = Distance.get().near(originCoor).between(originCoor, relCoor) / sqrt(2);
 
         this.mc = mc;
         this.translation = new Point2D.Double(-origin.getX(), -origin.getY());
@@ -190,6 +193,15 @@ public class GuiContainer {
         return new GuiContainer(mc.recalculate());
     }
 
+    /**
+     * @param changed The changed primitives, {@code null} if unknown
+     * @return A container for the updated model
+     * @see ModelContainer#update(Collection)
+     */
+    public GuiContainer update(Collection<? extends OsmPrimitive> changed) {
+        return new GuiContainer(mc.update(changed));
+    }
+
     public Iterable<RoadGui> getRoads() {
         return roads.values();
     }
@@ -34,6 +34,7 @@ import java.util.TreeMap;
 
 import org.openstreetmap.josm.tools.Logging;
 
+import com.kaart.laneconnectivity.model.ConnectivityTag;
 import com.kaart.laneconnectivity.model.Junction;
 import com.kaart.laneconnectivity.model.Road;
 import com.kaart.laneconnectivity.model.Turn;
@@ -65,15 +66,13 @@ class JunctionGui {
 
         private List<Path2D> getConnections() {
             List<Path2D> result = new ArrayList();
-            Map<Integer, Map<Integer, Boolean>> connectivity = turn.connectivityIndicesForGui();
+            final ConnectivityTag connectivity = turn.getConnectivity();
             final LaneGui laneGui = getContainer().getGui(turn.getFrom());
             final RoadGui roadGui = getContainer().getGui(turn.getTo().getRoad());
             int turnFromLaneIndex = laneGui.getModel().getIndex();
-            Map<Integer, Boolean> toConnections = connectivity.get(turnFromLaneIndex);
-            for (Map.Entry<Integer, Boolean> toLanes : toConnections
-                    .entrySet()) {
+            for (int i = connectivity.start(turnFromLaneIndex); i < connectivity.end(turnFromLaneIndex); i++) {
                 // Get to and from indexes
-                int toLane = toLanes.getKey();
+                int toLane = connectivity.getTo(i);
                 final Path2D path = new Path2D.Double();
                 final List<LaneGui> toLaneGuis = roadGui.getLanes();
                 LaneGui toLaneGui = null;
@@ -22,9 +22,12 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 
 import javax.swing.AbstractAction;
@@ -32,8 +35,10 @@ import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.KeyStroke;
 
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.tools.Logging;
 
+import com.kaart.laneconnectivity.model.ModelContainer;
 import com.kaart.laneconnectivity.model.UnexpectedDataException;
 
 class JunctionPane extends JComponent {
@@ -151,8 +156,31 @@ class JunctionPane extends JComponent {
     private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
 
     private final MouseInputProcessor mip = new MouseInputProcessor();
+    private final SceneBuilder builder = new SceneBuilder();
+    private final SceneCache cache = new SceneCache();
+    private final ScenePrefetcher prefetcher = new ScenePrefetcher(cache);
 
+    /**
+     * The displayed container
+     */
     private GuiContainer container;
+    /**
+     * The container the next build starts from, differs from {@link #container} while a new junction is built
+     */
+    private GuiContainer base;
+    /**
+     * {@code true} while a new junction is built, the view is reset once it's shown
+     */
+    private boolean reset;
+    /**
+     * The cache key of the junction being built, {@code null} if it isn't cached
+     */
+    private SceneCache.Key key;
+    /**
+     * The changes while building which don't concern the {@link #base}, checked against the built container once it's
+     * shown
+     */
+    private final Set<OsmPrimitive> deferred = new HashSet<>();
 
     private final JLabel error = new JLabel("");
 
@@ -266,21 +294,53 @@ class JunctionPane extends JComponent {
     }
 
     public void setJunction(GuiContainer container) {
+        setJunction(container, null);
+    }
+
+    /**
+     * Show a junction, reusing the scene built for the same key if it's cached
+     *
+     * @param container The container to build the junction from
+     * @param key       The cache key of the selection, {@code null} to not cache the junction
+     */
+    void setJunction(GuiContainer container, SceneCache.Key key) {
         removeMouseListener(mip);
         removeMouseMotionListener(mip);
         removeMouseWheelListener(mip);
-        this.interactives.clear();
-        this.dragging = null;
+        if (this.container == null) {
+            this.container = container;
+            this.state = new State.Default();
+        }
 
-        this.container = container;
-        center();
-        setState(new State.Invalid(new State.Default()));
+        this.reset = true;
+        this.key = key;
+        deferred.clear();
+        final GuiContainer cached = cache.get(key);
+        if (cached != null) {
+            builder.cancel();
+            show(cached);
+        } else {
+            // the current junction stays visible until the new one is built
+            this.base = container;
+            rebuild(null);
+        }
 
         addMouseListener(mip);
         addMouseMotionListener(mip);
         addMouseWheelListener(mip);
     }
 
+    /**
+     * Drop the cached scenes, e.g. when the edit layer changed, so that they don't keep the data set of a removed
+     * layer alive. The junction being built isn't cached either.
+     */
+    void clearCache() {
+        prefetcher.cancel();
+        cache.clear();
+        key = null;
+        deferred.clear();
+    }
+
     private void center() {
         final Rectangle2D bounds = container.getBounds();
 
@@ -310,31 +370,63 @@ class JunctionPane extends JComponent {
             this.state = state;
         } else if (state instanceof State.Invalid) {
             dirty = true;
-            setState(((State.Invalid) state).unwrap());
+            final State.Invalid invalid = (State.Invalid) state;
+            setState(invalid.unwrap());
+            rebuild(invalid.getChangedPrimitives());
+        } else if (state instanceof State.Dirty) {
+            dirty = true;
+            setState(((State.Dirty) state).unwrap());
+        } else {
+            this.state = state.carryOver(container);
+        }
 
-            try {
-                final GuiContainer old = container;
+        repaint();
+    }
 
-                container = container.recalculate();
+    private void rebuild(Collection<? extends OsmPrimitive> changed) {
+        final GuiContainer from = base;
 
-                if (old.isEmpty() != container.isEmpty()) {
-                    center();
-                }
-            } catch (UnexpectedDataException e) {
+        builder.build(from, changed, (result, version) -> {
+            if (key != null && key.getVersion() == version) {
+                cache.put(key, result);
+            }
+            show(result);
+            refreshDeferred();
+        }, e -> {
+            deferred.clear();
+            show(from);
+
+            if (e instanceof UnexpectedDataException) {
                 Logging.info("Exception");
                 Logging.error(e);
-                displayError(e);
-            } catch (RuntimeException e) {
+                displayError((UnexpectedDataException) e);
+            } else {
                 Logging.error(e);
                 displayError(e);
             }
-        } else if (state instanceof State.Dirty) {
-            dirty = true;
-            setState(((State.Dirty) state).unwrap());
-        } else {
-            this.state = state.carryOver(container);
+        });
+    }
+
+    private void show(GuiContainer next) {
+        final GuiContainer old = container;
+
+        container = next;
+        base = next;
+
+        if (reset) {
+            reset = false;
+            key = null;
+            interactives.clear();
+            dragging = null;
+            state = new State.Default();
+            center();
+            prefetcher.prefetch(next);
+        } else if (old.isEmpty() != next.isEmpty()) {
+            center();
         }
 
+        state = state.carryOver(next);
+        dirty = true;
         repaint();
     }
 
@@ -491,7 +583,41 @@ class JunctionPane extends JComponent {
         dot(g2d, p, r, Color.RED);
     }
 
-    void refresh() {
-        setState(new State.Invalid(state));
+    /**
+     * @param changed The primitives that changed, the model is rebuilt in the background only where needed and not
+     *                at all if none of them is {@link ModelContainer#isRelevant(OsmPrimitive) relevant}
+     */
+    void refresh(Collection<? extends OsmPrimitive> changed) {
+        // the data changed, prefetched neighbours would be outdated
+        prefetcher.cancel();
+
+        if (changed == null) {
+            setState(new State.Invalid(state));
+            return;
+        }
+
+        // the base is the displayed container, or the one being built from while building; relevant changes are
+        // merged into the running build
+        final List<OsmPrimitive> relevant = new ArrayList<>();
+        for (OsmPrimitive p : changed) {
+            if (base.getModel().isRelevant(p)) {
+                relevant.add(p);
+            } else if (builder.isBuilding()) {
+                // the build may extend the base, e.g. by a way connected by the changes it applies
+                deferred.add(p);
+            }
+        }
+
+        if (!relevant.isEmpty()) {
+            setState(new State.Invalid(state, relevant));
+        }
+    }
+
+    private void refreshDeferred() {
+        if (!deferred.isEmpty()) {
+            final List<OsmPrimitive> changed = new ArrayList<>(deferred);
+            deferred.clear();
+            refresh(changed);
+        }
     }
 }
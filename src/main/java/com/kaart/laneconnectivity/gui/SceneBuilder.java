@@ -0,0 +1,145 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.gui;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.laneconnectivity.model.DataSetVersion;
+import com.kaart.laneconnectivity.model.ModelContainer;
+
+/**
+ * Builds models and their geometry on a background thread, holding the read lock of the data set.
+ * <p>
+ * Only the latest build is delivered, starting a build cancels the running one. Builds never change the base
+ * container, which stays displayed until the new one is delivered. The base therefore doesn't reflect the changes of
+ * a cancelled build, and a new build from the same base applies them as well.
+ */
+final class SceneBuilder {
+    private static final ExecutorService EXECUTOR = Executors
+            .newSingleThreadExecutor(Utils.newThreadFactory("laneconnectivity-scene-%d", Thread.NORM_PRIORITY));
+
+    /**
+     * Receives the built containers
+     */
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * @param result  The built container
+         * @param version The {@link DataSetVersion} of the data the container was built from
+         */
+        void built(GuiContainer result, long version);
+    }
+
+    private final class Task implements Runnable {
+        private final GuiContainer base;
+        private final Set<OsmPrimitive> changed;
+        private final Listener onSuccess;
+        private final Consumer<RuntimeException> onFailure;
+
+        private volatile boolean cancelled;
+
+        Task(GuiContainer base, Set<OsmPrimitive> changed, Listener onSuccess,
+                Consumer<RuntimeException> onFailure) {
+            this.base = base;
+            this.changed = changed;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            final DataSet ds = base.getModel().getDataSet();
+            if (ds != null) {
+                ds.getReadLock().lock();
+            }
+            try {
+                final long version = ds == null ? 0 : DataSetVersion.of(ds);
+                final ModelContainer model = base.getModel().update(changed);
+                if (cancelled) {
+                    return;
+                }
+
+                final GuiContainer result = new GuiContainer(model);
+                deliver(() -> onSuccess.built(result, version));
+            } catch (RuntimeException e) {
+                deliver(() -> onFailure.accept(e));
+            } finally {
+                if (ds != null) {
+                    ds.getReadLock().unlock();
+                }
+            }
+        }
+
+        private void deliver(Runnable r) {
+            SwingUtilities.invokeLater(() -> {
+                if (current == this && !cancelled) {
+                    current = null;
+                    r.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * The build in progress, only accessed in the EDT
+     */
+    private Task current;
+
+    /**
+     * Start a build, cancelling the one in progress. Must be called in the EDT.
+     *
+     * @param base      The container to update
+     * @param changed   The changed primitives, {@code null} if unknown
+     * @param onSuccess Called in the EDT with the new container, unless cancelled
+     * @param onFailure Called in the EDT if the model couldn't be built, unless cancelled
+     */
+    void build(GuiContainer base, Collection<? extends OsmPrimitive> changed, Listener onSuccess,
+            Consumer<RuntimeException> onFailure) {
+        Set<OsmPrimitive> merged = changed == null ? null : new HashSet<>(changed);
+
+        if (current != null) {
+            current.cancelled = true;
+            if (current.base == base && merged != null) {
+                if (current.changed == null) {
+                    merged = null;
+                } else {
+                    merged.addAll(current.changed);
+                }
+            }
+        }
+
+        current = new Task(base, merged, onSuccess, onFailure);
+        EXECUTOR.execute(current);
+    }
+
+    /**
+     * Cancel the build in progress, if any. Must be called in the EDT.
+     */
+    void cancel() {
+        if (current != null) {
+            current.cancelled = true;
+            current = null;
+        }
+    }
+
+    /**
+     * @return {@code true} if a build is in progress, changes can't be filtered against the displayed model then
+     */
+    boolean isBuilding() {
+        return current != null;
+    }
+}
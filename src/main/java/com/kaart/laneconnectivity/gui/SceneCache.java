@@ -0,0 +1,138 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.gui;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+import com.kaart.laneconnectivity.model.DataSetVersion;
+
+/**
+ * A bounded cache of built junctions, so that returning to a recently viewed selection doesn't rebuild it. Entries
+ * are evicted by LRU and, being soft references, under memory pressure.
+ */
+final class SceneCache {
+    static final int MAX_SCENES = 16;
+
+    /**
+     * The selection a scene was built for and the version of the data it was built from
+     */
+    static final class Key {
+        private final Set<OsmPrimitive> selection;
+        private final DataSet dataSet;
+        private final long version;
+        private final boolean leftDirection;
+
+        Key(Collection<? extends OsmPrimitive> selection, DataSet dataSet, long version, boolean leftDirection) {
+            this.selection = Collections.unmodifiableSet(new HashSet<>(selection));
+            this.dataSet = dataSet;
+            this.version = version;
+            this.leftDirection = leftDirection;
+        }
+
+        /**
+         * @param selection     The selected primitives
+         * @param leftDirection The traffic direction of the scene
+         * @return The key for the current version of the data, {@code null} if the selection isn't in a data set
+         */
+        static Key of(Collection<? extends OsmPrimitive> selection, boolean leftDirection) {
+            for (OsmPrimitive p : selection) {
+                final DataSet ds = p.getDataSet();
+                if (ds != null) {
+                    return new Key(selection, ds, DataSetVersion.of(ds), leftDirection);
+                }
+            }
+
+            return null;
+        }
+
+        DataSet getDataSet() {
+            return dataSet;
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        boolean isLeftDirection() {
+            return leftDirection;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+            return version == other.version && leftDirection == other.leftDirection && dataSet == other.dataSet
+                    && selection.equals(other.selection);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(selection, System.identityHashCode(dataSet), version, leftDirection);
+        }
+    }
+
+    private final Map<Key, SoftReference<GuiContainer>> scenes = new LinkedHashMap<Key, SoftReference<GuiContainer>>(
+            MAX_SCENES, 0.75f, true) {
+        private static final long serialVersionUID = -3546624788766640442L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<GuiContainer>> eldest) {
+            return size() > MAX_SCENES;
+        }
+    };
+
+    /**
+     * @param key The key, may be {@code null}
+     * @return The cached scene, {@code null} if there is none
+     */
+    GuiContainer get(Key key) {
+        if (key == null) {
+            return null;
+        }
+
+        final SoftReference<GuiContainer> ref = scenes.get(key);
+        final GuiContainer scene = ref == null ? null : ref.get();
+        if (ref != null && scene == null) {
+            scenes.remove(key);
+        }
+        return scene;
+    }
+
+    /**
+     * @param key The key
+     * @return {@code true} if a scene is cached for the key (unless it was collected), the LRU order isn't changed
+     */
+    boolean contains(Key key) {
+        return scenes.containsKey(key);
+    }
+
+    /**
+     * @param key   The key
+     * @param scene The scene built for the key
+     */
+    void put(Key key, GuiContainer scene) {
+        scenes.put(key, new SoftReference<>(scene));
+    }
+
+    void clear() {
+        scenes.clear();
+    }
+
+    int size() {
+        return scenes.size();
+    }
+}
@@ -0,0 +1,129 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.gui;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.laneconnectivity.model.DataSetVersion;
+import com.kaart.laneconnectivity.model.Junction;
+import com.kaart.laneconnectivity.model.ModelContainer;
+import com.kaart.laneconnectivity.model.Road;
+
+/**
+ * Builds the junctions next to the displayed one in the background and puts them into the {@link SceneCache}, so
+ * that walking along a road junction by junction doesn't wait for builds.
+ * <p>
+ * Prefetched scenes are keyed like a selection of the single junction node. Prefetching runs with a low priority,
+ * is cancelled by {@link #cancel()} (e.g. on edits) and drops scenes whose data changed while they were built.
+ */
+final class ScenePrefetcher {
+    /**
+     * Leave most of the cache to the junctions that were actually viewed
+     */
+    static final int MAX_NEIGHBOURS = SceneCache.MAX_SCENES / 2;
+
+    private static final ExecutorService EXECUTOR = Executors
+            .newSingleThreadExecutor(Utils.newThreadFactory("laneconnectivity-prefetch-%d", Thread.MIN_PRIORITY));
+
+    private final SceneCache cache;
+
+    /**
+     * Increased on every (re)start and cancellation, tasks of older generations are skipped
+     */
+    private volatile int generation;
+
+    ScenePrefetcher(SceneCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Prefetch the neighbours of a scene, cancelling the previous prefetch. Must be called in the EDT.
+     *
+     * @param scene The displayed scene
+     */
+    void prefetch(GuiContainer scene) {
+        final int gen = ++generation;
+
+        final ModelContainer model = scene.getModel();
+        final DataSet ds = model.getDataSet();
+        if (ds == null || model.isEmpty()) {
+            return;
+        }
+
+        final long version = DataSetVersion.of(ds);
+        for (Node n : getNeighbours(model)) {
+            final SceneCache.Key key = new SceneCache.Key(Collections.singleton(n), ds, version,
+                    model.isLeftDirection());
+            if (!cache.contains(key)) {
+                EXECUTOR.execute(() -> build(gen, key, n));
+            }
+        }
+    }
+
+    /**
+     * Cancel the prefetch in progress. Must be called in the EDT.
+     */
+    void cancel() {
+        ++generation;
+    }
+
+    private static Set<Node> getNeighbours(ModelContainer model) {
+        final Set<Node> result = new LinkedHashSet<>();
+
+        for (Junction j : model.getPrimaryJunctions()) {
+            for (Road.End e : j.getRoadEnds()) {
+                final Junction neighbour = e.getOppositeEnd().getJunction();
+                if (!neighbour.isPrimary()) {
+                    result.add(neighbour.getNode());
+                }
+                if (result.size() >= MAX_NEIGHBOURS) {
+                    return result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void build(int gen, SceneCache.Key key, Node n) {
+        if (gen != generation) {
+            return;
+        }
+
+        final DataSet ds = key.getDataSet();
+        final GuiContainer scene;
+        ds.getReadLock().lock();
+        try {
+            if (DataSetVersion.of(ds) != key.getVersion()) {
+                return;
+            }
+
+            // like a selection of the node in the dialog
+            final ModelContainer selection = ModelContainer.createEmpty(Collections.singleton(n),
+                    Collections.<Way>emptySet());
+            selection.setLeftDirection(key.isLeftDirection());
+            scene = new GuiContainer(selection.recalculate());
+        } catch (RuntimeException e) {
+            // broken data is reported once the junction is selected
+            return;
+        } finally {
+            ds.getReadLock().unlock();
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            if (gen == generation) {
+                cache.put(key, scene);
+            }
+        });
+    }
+}
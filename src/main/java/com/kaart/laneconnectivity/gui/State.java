@@ -3,9 +3,12 @@ package com.kaart.laneconnectivity.gui;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
 import com.kaart.laneconnectivity.gui.connector.ViaConnector;
 import com.kaart.laneconnectivity.model.Junction;
 import com.kaart.laneconnectivity.model.Lane;
@@ -98,14 +101,27 @@ public abstract class State {
 
     static class Invalid extends State {
         private final State wrapped;
+        private final Collection<? extends OsmPrimitive> changed;
 
         Invalid(State wrapped) {
+            this(wrapped, null);
+        }
+
+        Invalid(State wrapped, Collection<? extends OsmPrimitive> changed) {
             this.wrapped = wrapped;
+            this.changed = changed;
         }
 
         public State unwrap() {
             return wrapped;
         }
+
+        /**
+         * @return The primitives that changed, or {@code null} if unknown (requires a full recalculation)
+         */
+        public Collection<? extends OsmPrimitive> getChangedPrimitives() {
+            return changed;
+        }
     }
 
     public static class Dirty extends State {
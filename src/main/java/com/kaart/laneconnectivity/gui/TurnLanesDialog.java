@@ -8,8 +8,10 @@ import java.awt.CardLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.ButtonGroup;
@@ -17,6 +19,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 
 import org.openstreetmap.josm.actions.JosmAction;
 import org.openstreetmap.josm.data.osm.DataSelectionListener;
@@ -81,52 +84,68 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
     private final DataSetListener dataSetListener = new DataSetListener() {
         @Override
         public void wayNodesChanged(WayNodesChangedEvent event) {
-            refresh();
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void tagsChanged(TagsChangedEvent event) {
-            refresh();
-
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void relationMembersChanged(RelationMembersChangedEvent event) {
-            refresh();
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void primitivesRemoved(PrimitivesRemovedEvent event) {
-            refresh();
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void primitivesAdded(PrimitivesAddedEvent event) {
-            refresh();
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void otherDatasetChange(AbstractDatasetChangedEvent event) {
-            refresh();
+            // changeset ids, data sources and conflicts don't change the model
         }
 
         @Override
         public void nodeMoved(NodeMovedEvent event) {
-            refresh();
+            refresh(event.getPrimitives());
         }
 
         @Override
         public void dataChanged(DataChangedEvent event) {
-            refresh();
+            // large changes like an undo or a download are fired as one event
+            final List<AbstractDatasetChangedEvent> events = event.getEvents();
+
+            if (events == null) {
+                refresh(null);
+            } else {
+                for (AbstractDatasetChangedEvent e : events) {
+                    e.fire(this);
+                }
+            }
         }
 
-        private void refresh() {
+        private void refresh(Collection<? extends OsmPrimitive> changed) {
             if (editing) {
-                junctionPane.refresh();
+                queueRefresh(changed);
             }
         }
     };
 
+    /**
+     * Guards the pending changes, events may be fired outside of the EDT
+     */
+    private final Object pendingLock = new Object();
+    private final Set<OsmPrimitive> pendingChanges = new HashSet<>();
+    private boolean pendingFull;
+    private boolean refreshQueued;
+
     private final JosmAction editAction = new EditAction();
     private final JosmAction validateAction = new ValidateAction();
 
@@ -138,6 +157,7 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
     private final JPanel body = new JPanel();
 
     private final JunctionPane junctionPane = new JunctionPane(GuiContainer.empty());
+    private final ValidationPanel validationPanel = new ValidationPanel();
 
     private final JToggleButton editButton = new JToggleButton(editAction);
     private final JToggleButton validateButton = new JToggleButton(validateAction);
@@ -170,7 +190,7 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
         add(body, BorderLayout.CENTER);
 
         body.add(junctionPane, CARD_EDIT);
-        body.add(new ValidationPanel(), CARD_VALIDATE);
+        body.add(validationPanel, CARD_VALIDATE);
 
         editButton.doClick();
     }
@@ -225,7 +245,45 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
             modelContainer = nodes.isEmpty() ? ModelContainer.empty() : ModelContainer.createEmpty(nodes, ways);
             modelContainer.setLeftDirection(leftDirection);
 
-            junctionPane.setJunction(new GuiContainer(modelContainer));
+            junctionPane.setJunction(new GuiContainer(modelContainer), SceneCache.Key.of(selected, leftDirection));
+        }
+    }
+
+    /**
+     * Collect changes until the next EDT cycle, so that a burst of events (e.g. an undo or a download) only rebuilds
+     * the junction pane once.
+     *
+     * @param changed The changed primitives, {@code null} if unknown
+     */
+    private void queueRefresh(Collection<? extends OsmPrimitive> changed) {
+        synchronized (pendingLock) {
+            if (changed == null) {
+                pendingFull = true;
+                pendingChanges.clear();
+            } else if (!pendingFull) {
+                pendingChanges.addAll(changed);
+            }
+
+            if (refreshQueued) {
+                return;
+            }
+            refreshQueued = true;
+        }
+
+        SwingUtilities.invokeLater(this::flushRefresh);
+    }
+
+    private void flushRefresh() {
+        final Collection<OsmPrimitive> changed;
+        synchronized (pendingLock) {
+            changed = pendingFull ? null : new ArrayList<>(pendingChanges);
+            pendingFull = false;
+            pendingChanges.clear();
+            refreshQueued = false;
+        }
+
+        if (editing) {
+            junctionPane.refresh(changed);
         }
     }
 
@@ -239,6 +297,10 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
         if (newLayer != null) {
             newLayer.getDataSet().addDataSetListener(dataSetListener);
         }
+        if (newLayer != oldLayer) {
+            // the cache keys reference the data set of the previous layer, which may have been removed
+            junctionPane.clearCache();
+        }
     }
 
     @Override
@@ -259,5 +321,6 @@ public class TurnLanesDialog extends ToggleDialog implements ActiveLayerChangeLi
         SelectionEventManager.getInstance().removeSelectionListener(this);
         editAction.destroy();
         validateAction.destroy();
+        validationPanel.destroy();
     }
 }
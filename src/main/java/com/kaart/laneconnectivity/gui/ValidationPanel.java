@@ -7,36 +7,195 @@ import java.awt.BorderLayout;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.swing.Action;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 
 import org.openstreetmap.josm.actions.JosmAction;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.MapFrame;
+import org.openstreetmap.josm.gui.PleaseWaitRunnable;
 import org.openstreetmap.josm.gui.SideButton;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 
+import com.kaart.laneconnectivity.model.IncrementalValidator;
 import com.kaart.laneconnectivity.model.Issue;
 import com.kaart.laneconnectivity.model.Validator;
 
-class ValidationPanel extends JPanel {
+class ValidationPanel extends JPanel implements LayerChangeListener {
     private static final long serialVersionUID = -1585778734201458665L;
 
     private static final String[] COLUMN_NAMES = { tr("Description"), tr("Type"), tr("Quick-Fix") };
 
+    /**
+     * The issues of the table. Rows are only computed when the table renders them, and the issues of a batch are
+     * added with a single event.
+     */
+    private static final class IssueTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 4471187930356470125L;
+
+        private final List<Issue> issues = new ArrayList<>();
+
+        Issue getIssue(int row) {
+            return issues.get(row);
+        }
+
+        void addAll(List<Issue> batch) {
+            if (!batch.isEmpty()) {
+                final int first = issues.size();
+                issues.addAll(batch);
+                fireTableRowsInserted(first, issues.size() - 1);
+            }
+        }
+
+        void remove(int row) {
+            issues.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+
+        void clear() {
+            issues.clear();
+            fireTableDataChanged();
+        }
+
+        /**
+         * Show the current issues, only removing the rows of the issues that are gone and inserting the rows of the
+         * new ones, so that the selection and the scroll position are kept
+         *
+         * @param current The current issues, the issues that are still shown must keep their order
+         */
+        void update(List<Issue> current) {
+            final Set<Issue> kept = new HashSet<>(current);
+            for (int row = issues.size() - 1; row >= 0; row--) {
+                if (!kept.contains(issues.get(row))) {
+                    remove(row);
+                }
+            }
+
+            final Set<Issue> remaining = new HashSet<>(issues);
+            int row = 0;
+            for (Issue i : current) {
+                if (row < issues.size() && issues.get(row) == i) {
+                    ++row;
+                } else if (remaining.contains(i)) {
+                    // reordered, which the validator avoids
+                    issues.clear();
+                    issues.addAll(current);
+                    fireTableDataChanged();
+                    return;
+                } else {
+                    issues.add(row, i);
+                    fireTableRowsInserted(row, row);
+                    ++row;
+                }
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return issues.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            final Issue i = issues.get(row);
+            switch (column) {
+            case 0:
+                return i.getDescription();
+            case 1:
+                return i.getRelation() == null ? tr("(none)") : i.getRelation().get("type");
+            default:
+                return i.getQuickFix().getDescription();
+            }
+        }
+    }
+
+    /**
+     * A validation reporting its progress and issues
+     */
+    @FunctionalInterface
+    private interface Validation {
+        void run(ProgressMonitor monitor, Consumer<List<Issue>> sink);
+    }
+
+    /**
+     * Validates in the background, adding the issues to the table as they are found
+     */
+    private final class ValidationTask extends PleaseWaitRunnable {
+        private final Validation validation;
+        private final Consumer<List<Issue>> sink;
+
+        /**
+         * @param validation The validation
+         * @param sink       Receives the issues reported by the validation in the EDT
+         */
+        ValidationTask(Validation validation, Consumer<List<Issue>> sink) {
+            super(tr("Validating turn lanes"));
+            this.validation = validation;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void realRun() {
+            validation.run(getProgressMonitor(), batch -> GuiHelper.runInEDT(() -> {
+                if (task == this) {
+                    sink.accept(batch);
+                }
+            }));
+        }
+
+        @Override
+        protected void cancel() {
+            // the validator stops after the current batch once the progress monitor is canceled
+        }
+
+        @Override
+        protected void finish() {
+            GuiHelper.runInEDT(() -> {
+                if (task == this) {
+                    task = null;
+                }
+            });
+        }
+    }
+
     private final Action refreshAction = new JosmAction(tr("Refresh"), "dialogs/refresh",
             tr("Revalidate all turnlanes-relations."), null, false) {
         private static final long serialVersionUID = -8110599654128234810L;
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            setIssues(new Validator().validate(MainApplication.getLayerManager().getEditDataSet()));
+            validate(MainApplication.getLayerManager().getEditDataSet());
         }
     };
 
@@ -46,10 +205,9 @@ class ValidationPanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (selected.getQuickFix().perform()) {
-                final int i = issues.indexOf(selected);
-                issueModel.removeRow(i);
-                issues.remove(i);
+            final int i = issueTable.getSelectedRow();
+            if (selected.getQuickFix().perform() && i >= 0 && issueModel.getIssue(i) == selected) {
+                issueModel.remove(i);
             }
         }
     };
@@ -71,9 +229,9 @@ class ValidationPanel extends JPanel {
     private final SideButton refreshButton = new SideButton(refreshAction);
     private final SideButton fixButton = new SideButton(fixAction);
     private final SideButton selectButton = new SideButton(selectAction);
+    private final JCheckBox inViewCheckBox = new JCheckBox(tr("In view"));
 
-    private final DefaultTableModel issueModel = new DefaultTableModel(COLUMN_NAMES, 0);
-    private final List<Issue> issues = new ArrayList<>();
+    private final IssueTableModel issueModel = new IssueTableModel();
     private final JTable issueTable = new JTable(issueModel) {
         private static final long serialVersionUID = 6323348290180585298L;
 
@@ -85,14 +243,38 @@ class ValidationPanel extends JPanel {
 
     private Issue selected;
 
+    /**
+     * The data set of the issues, {@code null} if there are none
+     */
+    private DataSet dataSet;
+
+    /**
+     * The running validation, {@code null} if there is none
+     */
+    private ValidationTask task;
+
+    /**
+     * Tracks the changes of the data set validated as a whole, {@code null} if none was validated yet. Only the first
+     * validation of a data set validates all relations, later ones only what changed in the meantime.
+     */
+    private IncrementalValidator validator;
+
+    /**
+     * The incremental validator whose issues the table shows, {@code null} if it shows the issues of an area or none
+     */
+    private IncrementalValidator shown;
+
     ValidationPanel() {
         super(new BorderLayout(4, 4));
 
-        final JPanel buttonPanel = new JPanel(new GridLayout(1, 3, 4, 4));
+        final JPanel buttonPanel = new JPanel(new GridLayout(1, 4, 4, 4));
 
         buttonPanel.add(refreshButton);
         buttonPanel.add(fixButton);
         buttonPanel.add(selectButton);
+        buttonPanel.add(inViewCheckBox);
+
+        inViewCheckBox.setToolTipText(tr("Only validate the relations in the current map view."));
 
         add(buttonPanel, BorderLayout.NORTH);
         add(new JScrollPane(issueTable), BorderLayout.CENTER);
@@ -102,28 +284,112 @@ class ValidationPanel extends JPanel {
             @Override
             public void valueChanged(ListSelectionEvent e) {
                 final int i = issueTable.getSelectedRow();
-                final Issue issue = i >= 0 ? issues.get(i) : null;
+                final Issue issue = i >= 0 ? issueModel.getIssue(i) : null;
 
                 setSelected(issue);
             }
         });
 
         setSelected(null);
+
+        MainApplication.getLayerManager().addLayerChangeListener(this);
     }
 
-    private void setIssues(List<Issue> issues) {
-        issueModel.setRowCount(0);
-        this.issues.clear();
+    /**
+     * Stop validating and release the validated data set, to be called when the dialog is destroyed
+     */
+    void destroy() {
+        MainApplication.getLayerManager().removeLayerChangeListener(this);
+        reset();
+    }
 
-        for (Issue i : issues) {
-            final String[] row = { i.getDescription(), //
-                    i.getRelation() == null ? tr("(none)") : i.getRelation().get("type"), //
-                    i.getQuickFix().getDescription() };
-            issueModel.addRow(row);
-            this.issues.add(i);
+    @Override
+    public void layerRemoving(LayerRemoveEvent e) {
+        if (dataSet != null && e.getRemovedLayer() instanceof OsmDataLayer
+                && ((OsmDataLayer) e.getRemovedLayer()).getDataSet() == dataSet) {
+            reset();
         }
     }
 
+    @Override
+    public void layerAdded(LayerAddEvent e) {
+        // nothing validated yet
+    }
+
+    @Override
+    public void layerOrderChanged(LayerOrderChangeEvent e) {
+        // the validated data set stays the same
+    }
+
+    /**
+     * Cancel the running validation, clear the issues and stop the incremental validator, so that nothing references
+     * the validated data set anymore
+     */
+    private void reset() {
+        if (task != null) {
+            task.getProgressMonitor().cancel();
+            task = null;
+        }
+        issueModel.clear();
+        shown = null;
+        dataSet = null;
+
+        if (validator != null) {
+            validator.stop();
+            validator = null;
+        }
+    }
+
+    private void validate(DataSet dataSet) {
+        if (task != null) {
+            task.getProgressMonitor().cancel();
+        }
+        this.dataSet = dataSet;
+
+        if (validator != null && validator.getDataSet() != dataSet) {
+            validator.stop();
+            validator = null;
+        }
+
+        final BBox area = inViewCheckBox.isSelected() ? getViewArea() : null;
+        if (dataSet == null) {
+            issueModel.clear();
+            shown = null;
+            task = null;
+        } else if (area != null) {
+            issueModel.clear();
+            shown = null;
+            task = new ValidationTask((monitor, sink) -> new Validator(true).validate(dataSet, area, monitor, sink),
+                    issueModel::addAll);
+            MainApplication.worker.submit(task);
+        } else {
+            if (validator == null) {
+                validator = new IncrementalValidator(dataSet, new Validator(true));
+                validator.start();
+            }
+            final IncrementalValidator incremental = validator;
+            if (shown == incremental) {
+                // only the rows of the changed issues are replaced
+                task = new ValidationTask((monitor, sink) -> sink.accept(incremental.update(monitor, batch -> { })),
+                        issueModel::update);
+            } else {
+                issueModel.clear();
+                shown = incremental;
+                task = new ValidationTask(incremental::update, issueModel::addAll);
+            }
+            MainApplication.worker.submit(task);
+        }
+    }
+
+    /**
+     * @return The area of the map view, {@code null} if there is no map
+     */
+    private static BBox getViewArea() {
+        final MapFrame map = MainApplication.getMap();
+        final Bounds bounds = map == null || map.mapView == null ? null : map.mapView.getRealBounds();
+        return bounds == null ? null : bounds.toBBox();
+    }
+
     private void setSelected(Issue selected) {
         this.selected = selected;
 
@@ -0,0 +1,513 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.tools.Pair;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * An index of the connectivity and lengths relations of a data set, so that the relations at a junction are found
+ * without filtering referrers or scanning the data set.
+ * <p>
+ * Connectivity relations are indexed by their member ways (per role) and via nodes, lengths relations by the
+ * direction of their ways (the way and the node it ends at in the route). The index is built with one scan of the
+ * relations when it's first requested and then kept up to date by a listener on the data set. Connectivity relations
+ * are also indexed by their {@link Signature}, to find the relation of a connection and duplicate relations.
+ * <p>
+ * An index is only referenced strongly by its listener on the data set, so the indexed relations never keep a data
+ * set alive: a data set that is no longer used is collected together with its index.
+ */
+public final class ConnectivityIndex {
+    private static final Map<DataSet, WeakReference<ConnectivityIndex>> INDICES = new WeakHashMap<>();
+
+    private static final Comparator<Relation> BY_ID = Comparator.comparingLong(Relation::getUniqueId);
+
+    private static final ConnectivityIndex EMPTY = new ConnectivityIndex(null);
+
+    /**
+     * The members of a connectivity relation: its from way, via members (in order) and to way. Relations with the same
+     * signature describe the same connection.
+     */
+    public static final class Signature {
+        private final Way from;
+        private final List<OsmPrimitive> via;
+        private final Way to;
+
+        /**
+         * @param from The from way
+         * @param via  The via node or ways, in order
+         * @param to   The to way
+         */
+        public Signature(Way from, List<? extends OsmPrimitive> via, Way to) {
+            this.from = Objects.requireNonNull(from);
+            this.via = Collections.unmodifiableList(new ArrayList<>(via));
+            this.to = Objects.requireNonNull(to);
+        }
+
+        /**
+         * @param r The connectivity relation
+         * @return The signature of the relation, {@code null} if it doesn't have exactly one from and to way
+         */
+        public static Signature of(Relation r) {
+            Way from = null;
+            Way to = null;
+            final List<OsmPrimitive> via = new ArrayList<>(1);
+            for (RelationMember m : r.getMembers()) {
+                if (Constants.ROLE_VIA.equals(m.getRole())) {
+                    via.add(m.getMember());
+                } else if (!m.isWay()) {
+                    continue;
+                } else if (Constants.ROLE_FROM.equals(m.getRole())) {
+                    if (from != null) {
+                        return null;
+                    }
+                    from = m.getWay();
+                } else if (Constants.ROLE_TO.equals(m.getRole())) {
+                    if (to != null) {
+                        return null;
+                    }
+                    to = m.getWay();
+                }
+            }
+
+            return from == null || to == null ? null : new Signature(from, via, to);
+        }
+
+        public Way getFrom() {
+            return from;
+        }
+
+        public List<OsmPrimitive> getVia() {
+            return via;
+        }
+
+        public Way getTo() {
+            return to;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            final Signature other = (Signature) obj;
+            return from.equals(other.from) && to.equals(other.to) && via.equals(other.via);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, via, to);
+        }
+    }
+
+    /**
+     * What a relation is indexed under, to remove it when it changes
+     */
+    private static final class Entries {
+        final boolean lengths;
+        final List<Pair<Way, String>> roles = new ArrayList<>();
+        final List<Node> via = new ArrayList<>();
+        final List<Pair<Way, Node>> directions = new ArrayList<>();
+        final List<Way> ways = new ArrayList<>();
+        Signature signature;
+        boolean broken;
+
+        Entries(boolean lengths) {
+            this.lengths = lengths;
+        }
+    }
+
+    private final class Listener implements DataSetListener {
+        @Override
+        public void primitivesAdded(PrimitivesAddedEvent event) {
+            update(event.getPrimitives());
+        }
+
+        @Override
+        public void primitivesRemoved(PrimitivesRemovedEvent event) {
+            update(event.getPrimitives());
+        }
+
+        @Override
+        public void tagsChanged(TagsChangedEvent event) {
+            update(event.getPrimitives());
+        }
+
+        @Override
+        public void relationMembersChanged(RelationMembersChangedEvent event) {
+            update(event.getPrimitives());
+        }
+
+        @Override
+        public void wayNodesChanged(WayNodesChangedEvent event) {
+            // the direction of lengths relations depends on the order of the nodes
+            synchronized (ConnectivityIndex.this) {
+                final Set<Relation> lengths = lengthsByWay.get(event.getChangedWay());
+                update(lengths == null ? Collections.<Relation>emptyList() : new ArrayList<>(lengths));
+            }
+        }
+
+        @Override
+        public void nodeMoved(NodeMovedEvent event) {
+            // positions aren't indexed
+        }
+
+        @Override
+        public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+            // e.g. changeset ids, not indexed
+        }
+
+        @Override
+        public void dataChanged(DataChangedEvent event) {
+            final List<AbstractDatasetChangedEvent> events = event.getEvents();
+
+            if (events == null) {
+                invalidate();
+            } else {
+                for (AbstractDatasetChangedEvent e : events) {
+                    e.fire(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the index of a data set, creating it if needed
+     *
+     * @param ds The data set, may be {@code null}
+     * @return The index, an empty index if the data set is {@code null}
+     */
+    public static ConnectivityIndex of(DataSet ds) {
+        if (ds == null) {
+            return EMPTY;
+        }
+
+        final ConnectivityIndex index;
+        synchronized (INDICES) {
+            final WeakReference<ConnectivityIndex> existing = INDICES.get(ds);
+            if (existing != null && existing.get() != null) {
+                return existing.get();
+            }
+
+            index = new ConnectivityIndex(ds);
+            INDICES.put(ds, new WeakReference<>(index));
+            ds.addDataSetListener(index.new Listener());
+        }
+
+        return index;
+    }
+
+    /**
+     * The indexed data set, which references this index through its listener
+     */
+    private final DataSet dataSet;
+
+    private final Map<Relation, Entries> entries = new HashMap<>();
+    private final Map<Way, Map<String, Set<Relation>>> connectivityByWay = new HashMap<>();
+    private final Map<Node, Set<Relation>> connectivityByVia = new HashMap<>();
+    private final Map<Signature, Set<Relation>> connectivityBySignature = new HashMap<>();
+    private final Map<Pair<Way, Node>, Set<Relation>> lengthsByDirection = new HashMap<>();
+    private final Map<Way, Set<Relation>> lengthsByWay = new HashMap<>();
+
+    /**
+     * {@code false} until the relations were scanned, and after changes that couldn't be applied incrementally
+     */
+    private boolean valid;
+
+    private ConnectivityIndex(DataSet ds) {
+        this.dataSet = ds;
+        this.valid = ds == null;
+    }
+
+    /**
+     * @param w    The way
+     * @param role The role of the way
+     * @return The connectivity relations with the way in the given role
+     */
+    public Set<Relation> getConnectivity(Way w, String role) {
+        ensureValid();
+        synchronized (this) {
+            final Map<String, Set<Relation>> byRole = connectivityByWay.get(w);
+            return copy(byRole == null ? null : byRole.get(role));
+        }
+    }
+
+    /**
+     * @param via The via node
+     * @return The connectivity relations with the node as via node
+     */
+    public Set<Relation> getConnectivity(Node via) {
+        ensureValid();
+        synchronized (this) {
+            return copy(connectivityByVia.get(via));
+        }
+    }
+
+    /**
+     * @param signature The members of the connection
+     * @return The connectivity relations with the given members
+     */
+    public Set<Relation> getConnectivity(Signature signature) {
+        ensureValid();
+        synchronized (this) {
+            return copy(connectivityBySignature.get(signature));
+        }
+    }
+
+    /**
+     * @param r The connectivity relation
+     * @return The other connectivity relations with the same members as the relation, in the order they were indexed
+     */
+    public Set<Relation> getDuplicates(Relation r) {
+        final Signature signature = Signature.of(r);
+        if (signature == null) {
+            return Collections.emptySet();
+        }
+
+        final Set<Relation> result = new LinkedHashSet<>(getConnectivity(signature));
+        result.remove(r);
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Get the lengths relations of a way in one direction
+     *
+     * @param w   The way
+     * @param end The node the way ends at in the relation's route
+     * @return The lengths relations
+     * @throws UnexpectedDataException if the route of a lengths relation of the way can't be loaded
+     * @throws IllegalArgumentException if the route of a lengths relation of the way can't be loaded
+     */
+    public Set<Relation> getLengths(Way w, Node end) {
+        ensureValid();
+        final List<Relation> broken = new ArrayList<>();
+        final Set<Relation> result;
+        synchronized (this) {
+            result = copy(lengthsByDirection.get(new Pair<>(w, end)));
+
+            final Set<Relation> lengths = lengthsByWay.get(w);
+            if (lengths != null) {
+                for (Relation r : lengths) {
+                    if (entries.get(r).broken) {
+                        broken.add(r);
+                    }
+                }
+            }
+        }
+
+        // report broken relations like loading them would
+        for (Relation r : broken) {
+            Route.load(r);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return All connectivity relations of the data set, ordered by id
+     */
+    public List<Relation> getConnectivityRelations() {
+        return getRelations(false);
+    }
+
+    /**
+     * @return All lengths relations of the data set, ordered by id
+     */
+    public List<Relation> getLengthsRelations() {
+        return getRelations(true);
+    }
+
+    private List<Relation> getRelations(boolean lengths) {
+        ensureValid();
+        synchronized (this) {
+            final List<Relation> result = new ArrayList<>();
+            for (Map.Entry<Relation, Entries> e : entries.entrySet()) {
+                if (e.getValue().lengths == lengths) {
+                    result.add(e.getKey());
+                }
+            }
+            // edited relations are indexed again at the end
+            result.sort(BY_ID);
+            return result;
+        }
+    }
+
+    private static Set<Relation> copy(Set<Relation> relations) {
+        return relations == null ? Collections.<Relation>emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<>(relations));
+    }
+
+    private synchronized void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Scan the relations of the data set if needed. The read lock is taken without holding the monitor of the index,
+     * since listeners are called with the write lock held.
+     */
+    private void ensureValid() {
+        synchronized (this) {
+            if (valid) {
+                return;
+            }
+        }
+
+        if (dataSet == null) {
+            return;
+        }
+
+        final List<Relation> relations;
+        dataSet.getReadLock().lock();
+        try {
+            relations = new ArrayList<>(dataSet.getRelations());
+            synchronized (this) {
+                if (valid) {
+                    return;
+                }
+
+                entries.clear();
+                connectivityByWay.clear();
+                connectivityByVia.clear();
+                connectivityBySignature.clear();
+                lengthsByDirection.clear();
+                lengthsByWay.clear();
+                for (Relation r : relations) {
+                    add(r);
+                }
+                valid = true;
+            }
+        } finally {
+            dataSet.getReadLock().unlock();
+        }
+    }
+
+    private synchronized void update(Collection<? extends OsmPrimitive> changed) {
+        if (!valid) {
+            // applied by the next scan
+            return;
+        }
+
+        for (OsmPrimitive p : changed) {
+            if (p instanceof Relation) {
+                remove((Relation) p);
+                add((Relation) p);
+            }
+        }
+    }
+
+    private void add(Relation r) {
+        if (r.isDeleted() || r.getDataSet() == null) {
+            return;
+        }
+
+        final String type = r.get("type");
+        if (Constants.TYPE_CONNECTIVITY.equals(type)) {
+            final Entries e = new Entries(false);
+            for (RelationMember m : r.getMembers()) {
+                if (m.isWay()) {
+                    final Pair<Way, String> role = new Pair<>(m.getWay(), m.getRole());
+                    e.roles.add(role);
+                    connectivityByWay.computeIfAbsent(role.a, k -> new HashMap<>(4))
+                            .computeIfAbsent(role.b, k -> new LinkedHashSet<>()).add(r);
+                } else if (m.isNode() && Constants.ROLE_VIA.equals(m.getRole())) {
+                    e.via.add(m.getNode());
+                    connectivityByVia.computeIfAbsent(m.getNode(), k -> new LinkedHashSet<>()).add(r);
+                }
+            }
+            e.signature = Signature.of(r);
+            if (e.signature != null) {
+                connectivityBySignature.computeIfAbsent(e.signature, k -> new LinkedHashSet<>()).add(r);
+            }
+            entries.put(r, e);
+        } else if (Constants.TYPE_LENGTHS.equals(type)) {
+            final Entries e = new Entries(true);
+            for (Way w : Utils.filteredCollection(r.getMemberPrimitivesList(), Way.class)) {
+                e.ways.add(w);
+                lengthsByWay.computeIfAbsent(w, k -> new LinkedHashSet<>()).add(r);
+            }
+
+            try {
+                final Set<Way> seen = new HashSet<>();
+                for (Route.Segment s : Route.load(r).getSegments()) {
+                    if (seen.add(s.getWay())) {
+                        final Pair<Way, Node> direction = new Pair<>(s.getWay(), s.getEnd());
+                        e.directions.add(direction);
+                        lengthsByDirection.computeIfAbsent(direction, k -> new LinkedHashSet<>()).add(r);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                // reported by getLengths(Way, Node)
+                e.broken = true;
+            }
+            entries.put(r, e);
+        }
+    }
+
+    private void remove(Relation r) {
+        final Entries e = entries.remove(r);
+        if (e == null) {
+            return;
+        }
+
+        for (Pair<Way, String> role : e.roles) {
+            final Map<String, Set<Relation>> byRole = connectivityByWay.get(role.a);
+            removeFrom(byRole, role.b, r);
+            if (byRole != null && byRole.isEmpty()) {
+                connectivityByWay.remove(role.a);
+            }
+        }
+        for (Node n : e.via) {
+            removeFrom(connectivityByVia, n, r);
+        }
+        if (e.signature != null) {
+            removeFrom(connectivityBySignature, e.signature, r);
+        }
+        for (Pair<Way, Node> direction : e.directions) {
+            removeFrom(lengthsByDirection, direction, r);
+        }
+        for (Way w : e.ways) {
+            removeFrom(lengthsByWay, w, r);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Relation>> map, K key, Relation r) {
+        final Set<Relation> relations = map == null ? null : map.get(key);
+        if (relations != null) {
+            relations.remove(r);
+            if (relations.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
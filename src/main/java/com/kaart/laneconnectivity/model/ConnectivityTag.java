@@ -0,0 +1,412 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.openstreetmap.josm.data.osm.Relation;
+
+/**
+ * An immutable, parsed {@code connectivity=*} value (e.g. {@code 1:1|2:2,(3)}).
+ * <p>
+ * Every connection is packed into a single {@code long} ({@code from} lane in the upper 32 bits, {@code to} lane in
+ * bits 1-31 and the "optional" flag in bit 0), and the connections are kept sorted by from lane and then to lane.
+ * Parsing is done in a single pass over the characters of the value, without regular expressions, substrings or
+ * boxed integers.
+ */
+public final class ConnectivityTag {
+    private static final ConnectivityTag EMPTY = new ConnectivityTag(new long[0]);
+
+    private static final long OPTIONAL = 1L;
+
+    /**
+     * Parse the connectivity tag of a relation
+     *
+     * @param r The relation with a {@code connectivity} tag
+     * @return The parsed tag, or an empty tag if the relation has no {@code connectivity} tag
+     * @throws UnexpectedDataException if the tag can't be parsed
+     */
+    public static ConnectivityTag of(Relation r) {
+        return of(r, Constants.TYPE_CONNECTIVITY);
+    }
+
+    /**
+     * Parse a tag of a relation in the connectivity format. The result is cached, see {@link ParsedTagCache}.
+     *
+     * @param r   The relation with the key-value to parse
+     * @param key The key to parse
+     * @return The parsed tag, or an empty tag if the relation doesn't have the key
+     * @throws UnexpectedDataException if the tag can't be parsed
+     */
+    public static ConnectivityTag of(Relation r, String key) {
+        return ParsedTagCache.getConnectivity(r, key);
+    }
+
+    /**
+     * Parse a value in the connectivity format. Whitespace around numbers is tolerated, as are empty lane groups.
+     *
+     * @param key   The key of the value (only used for error messages)
+     * @param value The value to parse, may be {@code null}
+     * @return The parsed value
+     * @throws UnexpectedDataException if the value can't be parsed
+     */
+    public static ConnectivityTag parse(String key, String value) {
+        if (value == null) {
+            return EMPTY;
+        }
+
+        final int length = value.length();
+        // every connection needs at least one digit and one separator
+        long[] connections = new long[length / 2 + 1];
+        int size = 0;
+
+        int i = 0;
+        while (i <= length) {
+            i = skipWhitespace(value, i);
+            if (i == length || value.charAt(i) == '|') {
+                // empty lane group
+                i++;
+                continue;
+            }
+
+            final int fromEnd = skipDigits(value, i);
+            final long from = parseInt(key, value, i, fromEnd);
+            i = skipWhitespace(value, fromEnd);
+            if (i == length || value.charAt(i) != ':') {
+                throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, value);
+            }
+
+            // to lanes, separated by one of ",:;"
+            do {
+                i = skipWhitespace(value, i + 1);
+                final boolean optional = i < length && value.charAt(i) == '(';
+                if (optional) {
+                    i = skipWhitespace(value, i + 1);
+                }
+                final int toEnd = skipDigits(value, i);
+                final long to = parseInt(key, value, i, toEnd);
+                i = skipWhitespace(value, toEnd);
+                if (optional) {
+                    if (i == length || value.charAt(i) != ')') {
+                        throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, value);
+                    }
+                    i = skipWhitespace(value, i + 1);
+                }
+                connections[size++] = pack(from, to, optional);
+            } while (i < length && isToSeparator(value.charAt(i)));
+
+            if (i < length && value.charAt(i) != '|') {
+                throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, value);
+            }
+            i++;
+        }
+
+        return size == 0 ? EMPTY : new ConnectivityTag(normalize(connections, size));
+    }
+
+    /**
+     * Convert a map in the form of {@code Map<Lane From, Map<Lane To, Optional>>}
+     *
+     * @param lanes The map to convert
+     * @return The equivalent tag
+     */
+    public static ConnectivityTag fromMap(Map<Integer, Map<Integer, Boolean>> lanes) {
+        int size = 0;
+        for (Map<Integer, Boolean> to : lanes.values()) {
+            size += to.size();
+        }
+
+        final long[] connections = new long[size];
+        int i = 0;
+        for (Entry<Integer, Map<Integer, Boolean>> from : lanes.entrySet()) {
+            for (Entry<Integer, Boolean> to : from.getValue().entrySet()) {
+                connections[i++] = pack(from.getKey(), to.getKey(), to.getValue());
+            }
+        }
+
+        return size == 0 ? EMPTY : new ConnectivityTag(normalize(connections, size));
+    }
+
+    private static int skipWhitespace(String value, int i) {
+        while (i < value.length() && isWhitespace(value.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c <= ' ' || Character.getType(c) == Character.SPACE_SEPARATOR;
+    }
+
+    private static int skipDigits(String value, int i) {
+        while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isToSeparator(char c) {
+        return c == ',' || c == ';' || c == ':';
+    }
+
+    private static long parseInt(String key, String value, int start, int end) {
+        if (start == end) {
+            throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, value);
+        }
+
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + value.charAt(i) - '0';
+            if (result > Integer.MAX_VALUE) {
+                throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, value);
+            }
+        }
+        return result;
+    }
+
+    private static long pack(long from, long to, boolean optional) {
+        if (from < 0 || to < 0) {
+            throw new IllegalArgumentException("Lane numbers must not be negative.");
+        }
+        return from << 32 | to << 1 | (optional ? OPTIONAL : 0);
+    }
+
+    /**
+     * Sort the connections and merge duplicates. A connection that is given both as optional and as regular
+     * connection is regular.
+     */
+    private static long[] normalize(long[] connections, int size) {
+        Arrays.sort(connections, 0, size);
+
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (j > 0 && connections[j - 1] >>> 1 == connections[i] >>> 1) {
+                connections[j - 1] &= connections[i];
+            } else {
+                connections[j++] = connections[i];
+            }
+        }
+
+        return j == connections.length ? connections : Arrays.copyOf(connections, j);
+    }
+
+    private final long[] connections;
+
+    private ConnectivityTag(long[] connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * @return The number of lane to lane connections
+     */
+    public int size() {
+        return connections.length;
+    }
+
+    public boolean isEmpty() {
+        return connections.length == 0;
+    }
+
+    /**
+     * @param i The index of the connection
+     * @return The from lane of the connection (lanes start at 1)
+     */
+    public int getFrom(int i) {
+        return (int) (connections[i] >>> 32);
+    }
+
+    /**
+     * @param i The index of the connection
+     * @return The to lane of the connection (lanes start at 1)
+     */
+    public int getTo(int i) {
+        return (int) (connections[i] >>> 1 & Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param i The index of the connection
+     * @return {@code true} if the connection is optional (e.g. {@code (2)})
+     */
+    public boolean isOptional(int i) {
+        return (connections[i] & OPTIONAL) != 0;
+    }
+
+    /**
+     * Get the index of the first connection of a from lane. Use together with {@link #end(int)}:
+     * {@code for (int i = tag.start(lane); i < tag.end(lane); i++)}.
+     *
+     * @param from The from lane
+     * @return The index of the first connection from the lane, or {@link #end(int)} if there is none
+     */
+    public int start(int from) {
+        return lowerBound((long) from << 32);
+    }
+
+    /**
+     * @param from The from lane
+     * @return The index after the last connection from the lane
+     * @see #start(int)
+     */
+    public int end(int from) {
+        return lowerBound((long) from + 1 << 32);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = connections.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (connections[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param from The from lane
+     * @return {@code true} if there is at least one connection from the lane
+     */
+    public boolean hasFrom(int from) {
+        return start(from) < end(from);
+    }
+
+    /**
+     * @return The distinct from lanes, in ascending order
+     */
+    public int[] getFromLanes() {
+        final int[] result = new int[connections.length];
+        int size = 0;
+        for (int i = 0; i < connections.length; i++) {
+            final int from = getFrom(i);
+            if (size == 0 || result[size - 1] != from) {
+                result[size++] = from;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return The highest from lane, or 0 if there are no connections
+     */
+    public int getMaxFrom() {
+        return isEmpty() ? 0 : getFrom(connections.length - 1);
+    }
+
+    /**
+     * @return The highest to lane, or 0 if there are no connections
+     */
+    public int getMaxTo() {
+        int max = 0;
+        for (int i = 0; i < connections.length; i++) {
+            max = Math.max(max, getTo(i));
+        }
+        return max;
+    }
+
+    /**
+     * Add a connection. If the connection already exists, its optional flag is replaced.
+     *
+     * @param from     The from lane
+     * @param to       The to lane
+     * @param optional {@code true} if the connection is optional
+     * @return A tag with the connection
+     */
+    public ConnectivityTag with(int from, int to, boolean optional) {
+        final long[] result = Arrays.copyOf(connections, connections.length + 1);
+        final long connection = pack(from, to, optional);
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] >>> 1 == connection >>> 1) {
+                result[i] = connection;
+                return new ConnectivityTag(Arrays.copyOf(result, connections.length));
+            }
+        }
+        result[connections.length] = connection;
+        Arrays.sort(result);
+        return new ConnectivityTag(result);
+    }
+
+    /**
+     * Remove all connections of a from lane
+     *
+     * @param from The from lane
+     * @return A tag without connections from the lane
+     */
+    public ConnectivityTag withoutFrom(int from) {
+        final int start = start(from);
+        final int end = end(from);
+        if (start == end) {
+            return this;
+        }
+
+        final long[] result = new long[connections.length - (end - start)];
+        System.arraycopy(connections, 0, result, 0, start);
+        System.arraycopy(connections, end, result, start, connections.length - end);
+        return result.length == 0 ? EMPTY : new ConnectivityTag(result);
+    }
+
+    /**
+     * @return A map in the form of {@code Map<Lane From, Map<Lane To, Optional>>}
+     */
+    public Map<Integer, Map<Integer, Boolean>> toMap() {
+        final Map<Integer, Map<Integer, Boolean>> result = new TreeMap<>();
+        for (int i = 0; i < connections.length; i++) {
+            result.computeIfAbsent(getFrom(i), k -> new TreeMap<>()).put(getTo(i), isOptional(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return The value to write into the tag, or {@code null} if there are no connections (removes the tag)
+     */
+    public String toTagValue() {
+        return isEmpty() ? null : toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(connections);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        return Arrays.equals(connections, ((ConnectivityTag) obj).connections);
+    }
+
+    /**
+     * @return The value in the connectivity format, e.g. {@code 1:1|2:2,(3)}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(connections.length * 4);
+
+        for (int i = 0; i < connections.length; i++) {
+            if (i == 0 || getFrom(i - 1) != getFrom(i)) {
+                if (i > 0) {
+                    builder.append('|');
+                }
+                builder.append(getFrom(i)).append(Constants.CONNECTIVITY_TO_FROM_SEPARATOR);
+            } else {
+                builder.append(Constants.COMMA_SEPARATOR);
+            }
+
+            if (isOptional(i)) {
+                builder.append('(').append(getTo(i)).append(')');
+            } else {
+                builder.append(getTo(i));
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,191 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+
+/**
+ * A cache of values derived from the tags of primitives, with one bounded (LRU) cache per data set.
+ * <p>
+ * The cache of a data set is only referenced strongly by its listener on the data set, so cached primitives never
+ * keep a data set alive: a data set that is no longer used is collected together with its cache. The listener drops
+ * the values of primitives with changed tags or members and of removed primitives, and clears the cache on
+ * {@code DataChangedEvent}. Primitives without a data set don't fire events and are never cached.
+ *
+ * @param <K> The type of the cached primitives
+ * @param <V> The type of the values
+ */
+final class DataSetCache<K extends OsmPrimitive, V> {
+    private final class Scope implements DataSetListener {
+        private final Map<K, V> values = new LinkedHashMap<K, V>(64, 0.75f, true) {
+            private static final long serialVersionUID = -3146584734766217358L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        @Override
+        public void tagsChanged(TagsChangedEvent event) {
+            remove(event.getPrimitive());
+        }
+
+        @Override
+        public void relationMembersChanged(RelationMembersChangedEvent event) {
+            remove(event.getRelation());
+        }
+
+        @Override
+        public void primitivesRemoved(PrimitivesRemovedEvent event) {
+            // removed primitives no longer know their data set
+            event.getPrimitives().forEach(this::remove);
+        }
+
+        @Override
+        public void dataChanged(DataChangedEvent event) {
+            synchronized (DataSetCache.this) {
+                version++;
+                values.clear();
+            }
+        }
+
+        private void remove(OsmPrimitive p) {
+            synchronized (DataSetCache.this) {
+                version++;
+                values.remove(p);
+            }
+        }
+
+        @Override
+        public void primitivesAdded(PrimitivesAddedEvent event) {
+            // not cached yet
+        }
+
+        @Override
+        public void wayNodesChanged(WayNodesChangedEvent event) {
+            // values only depend on tags
+        }
+
+        @Override
+        public void nodeMoved(NodeMovedEvent event) {
+            // values only depend on tags
+        }
+
+        @Override
+        public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+            // values only depend on tags
+        }
+    }
+
+    private final int maxSize;
+    private final Map<DataSet, WeakReference<Scope>> scopes = new WeakHashMap<>();
+
+    /**
+     * Increased whenever values are dropped, so that values computed before aren't cached, see
+     * {@link #put(OsmPrimitive, Object, long)}
+     */
+    private long version;
+
+    /**
+     * @param maxSize The maximum number of values per data set
+     */
+    DataSetCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The current version, to be passed to {@link #put(OsmPrimitive, Object, long)}
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param key The primitive
+     * @return The cached value, {@code null} if there is none
+     */
+    synchronized V get(K key) {
+        final Scope scope = getScope(key.getDataSet());
+        return scope == null ? null : scope.values.get(key);
+    }
+
+    /**
+     * Cache a value, unless the primitive has no data set or values were dropped since it was computed
+     *
+     * @param key          The primitive
+     * @param value        The value
+     * @param valueVersion The {@link #getVersion() version} read before the value was computed
+     */
+    synchronized void put(K key, V value, long valueVersion) {
+        final DataSet ds = key.getDataSet();
+        if (ds == null || valueVersion != version) {
+            return;
+        }
+
+        Scope scope = getScope(ds);
+        if (scope == null) {
+            scope = new Scope();
+            scopes.put(ds, new WeakReference<>(scope));
+            ds.addDataSetListener(scope);
+        }
+        scope.values.put(key, value);
+    }
+
+    private Scope getScope(DataSet ds) {
+        final WeakReference<Scope> scope = ds == null ? null : scopes.get(ds);
+        return scope == null ? null : scope.get();
+    }
+
+    /**
+     * @param p The primitive to drop the value of
+     */
+    synchronized void invalidate(OsmPrimitive p) {
+        version++;
+        for (WeakReference<Scope> scope : scopes.values()) {
+            final Scope s = scope.get();
+            if (s != null) {
+                s.values.remove(p);
+            }
+        }
+    }
+
+    /**
+     * Drop all values of all data sets
+     */
+    synchronized void clear() {
+        version++;
+        for (WeakReference<Scope> scope : scopes.values()) {
+            final Scope s = scope.get();
+            if (s != null) {
+                s.values.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached values of all data sets
+     */
+    synchronized int size() {
+        int result = 0;
+        for (WeakReference<Scope> scope : scopes.values()) {
+            final Scope s = scope.get();
+            result += s == null ? 0 : s.values.size();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+
+/**
+ * A modification counter per data set, so that results derived from a data set can be checked for staleness.
+ * <p>
+ * JOSM doesn't count modifications, so a listener is added to a data set the first time its version is requested.
+ * The counter is increased on every event of the data set, changes before the first request aren't counted.
+ */
+public final class DataSetVersion {
+    private static final Map<DataSet, long[]> VERSIONS = new WeakHashMap<>();
+
+    private static final DataSetListener COUNTER = new DataSetListenerAdapter(
+            event -> increment(event.getDataset()));
+
+    private DataSetVersion() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Get the current version of a data set. Read it while holding the read lock of the data set to get the version
+     * of the data that is read.
+     *
+     * @param ds The data set
+     * @return The number of changes to the data set since it was first watched
+     */
+    public static long of(DataSet ds) {
+        synchronized (VERSIONS) {
+            final long[] version = VERSIONS.get(ds);
+            if (version != null) {
+                return version[0];
+            }
+
+            VERSIONS.put(ds, new long[1]);
+            ds.addDataSetListener(COUNTER);
+            return 0;
+        }
+    }
+
+    private static void increment(DataSet ds) {
+        synchronized (VERSIONS) {
+            final long[] version = VERSIONS.get(ds);
+            if (version != null) {
+                version[0]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.List;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.projection.Ellipsoid;
+
+/**
+ * The engine used for all lengths in the model.
+ * <p>
+ * Distances are measured {@link #near(LatLon) near} a reference point, e.g. a junction. The {@link #FAST} engine
+ * caches the trigonometry of the reference point and is accurate to millimetres for the distances of lanes.
+ */
+public enum Distance {
+    /**
+     * {@link LatLon#greatCircleDistance(LatLon)}
+     */
+    EXACT {
+        @Override
+        public Measure near(LatLon reference) {
+            return LatLon::greatCircleDistance;
+        }
+    },
+    /**
+     * An equirectangular approximation. The cosine of the latitude is derived from the cached sine and cosine of the
+     * reference point (second order Taylor expansion), so no trigonometric functions are called per node pair.
+     */
+    FAST {
+        @Override
+        public Measure near(LatLon reference) {
+            final double lat0 = Math.toRadians(reference.lat());
+            final double cos0 = Math.cos(lat0);
+            final double sin0 = Math.sin(lat0);
+
+            return (a, b) -> {
+                final double lat1 = Math.toRadians(a.lat());
+                final double lat2 = Math.toRadians(b.lat());
+                final double d = (lat1 + lat2) / 2 - lat0;
+                final double cos = cos0 * (1 - d * d / 2) - sin0 * d;
+
+                double dLon = b.lon() - a.lon();
+                if (dLon > 180) {
+                    dLon -= 360;
+                } else if (dLon < -180) {
+                    dLon += 360;
+                }
+
+                final double x = Math.toRadians(dLon) * cos;
+                final double y = lat2 - lat1;
+                return Ellipsoid.WGS84.a * Math.sqrt(x * x + y * y);
+            };
+        }
+    };
+
+    /**
+     * Measures distances near a reference point
+     */
+    @FunctionalInterface
+    public interface Measure {
+        /**
+         * @param a The first coordinate
+         * @param b The second coordinate
+         * @return The distance in meters
+         */
+        double between(LatLon a, LatLon b);
+
+        /**
+         * @param nodes The nodes of a line
+         * @return The length of the line in meters
+         */
+        default double length(List<Node> nodes) {
+            double length = 0;
+
+            LatLon last = nodes.get(0).getCoor();
+            for (int i = 1; i < nodes.size(); i++) {
+                final LatLon next = nodes.get(i).getCoor();
+                length += between(last, next);
+                last = next;
+            }
+
+            return length;
+        }
+    }
+
+    private static volatile Distance engine = FAST;
+
+    /**
+     * @return The engine used for new routes and GUI containers
+     */
+    public static Distance get() {
+        return engine;
+    }
+
+    /**
+     * @param engine The engine to use for new routes and GUI containers
+     */
+    public static void set(Distance engine) {
+        Distance.engine = engine;
+    }
+
+    /**
+     * @param reference The reference point, distances are expected to be within a few kilometres of it
+     * @return A measure for distances near the reference point
+     */
+    public abstract Measure near(LatLon reference);
+}
@@ -0,0 +1,331 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * Keeps the issues of a data set current by validating only what changed since the last validation.
+ * <p>
+ * Changes are collected by a listener on the data set. An {@link #update()} revalidates the changed relations, the
+ * relations of changed member ways and of ways with moved nodes, and all relations sharing a junction with them, since
+ * the lanes referenced at a junction depend on all its relations. The issues of the other relations are kept.
+ */
+public final class IncrementalValidator {
+    private final class Listener implements DataSetListener {
+        @Override
+        public void primitivesAdded(PrimitivesAddedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void primitivesRemoved(PrimitivesRemovedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void tagsChanged(TagsChangedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void nodeMoved(NodeMovedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void wayNodesChanged(WayNodesChangedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void relationMembersChanged(RelationMembersChangedEvent event) {
+            changed(event.getPrimitives());
+        }
+
+        @Override
+        public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+            // e.g. changeset ids, not validated
+        }
+
+        @Override
+        public void dataChanged(DataChangedEvent event) {
+            final List<AbstractDatasetChangedEvent> events = event.getEvents();
+
+            if (events == null) {
+                synchronized (pendingLock) {
+                    full = true;
+                    changed.clear();
+                }
+            } else {
+                for (AbstractDatasetChangedEvent e : events) {
+                    e.fire(this);
+                }
+            }
+        }
+    }
+
+    private final DataSet dataSet;
+    private final Validator validator;
+    private final Listener listener = new Listener();
+
+    private Validator.Junctions junctions = new Validator.Junctions();
+    private final Map<Relation, List<Issue>> relationIssues = new LinkedHashMap<>();
+    private final Map<Validator.IncomingLanes.Key, Issue> unreferenced = new LinkedHashMap<>();
+
+    /**
+     * Guards the changes, which are collected with the write lock of the data set held. It is never held while
+     * waiting for the read lock.
+     */
+    private final Object pendingLock = new Object();
+    private final Set<OsmPrimitive> changed = new HashSet<>();
+    private boolean full = true;
+    private boolean listening;
+
+    /**
+     * @param dataSet   The data set to validate
+     * @param validator The validator for full validations
+     */
+    public IncrementalValidator(DataSet dataSet, Validator validator) {
+        this.dataSet = dataSet;
+        this.validator = validator;
+    }
+
+    public DataSet getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * Start collecting the changes of the data set, the first {@link #update()} validates the whole data set
+     */
+    public synchronized void start() {
+        if (!listening) {
+            dataSet.addDataSetListener(listener);
+            listening = true;
+            synchronized (pendingLock) {
+                full = true;
+                changed.clear();
+            }
+        }
+    }
+
+    /**
+     * Stop collecting the changes of the data set
+     */
+    public synchronized void stop() {
+        if (listening) {
+            dataSet.removeDataSetListener(listener);
+            listening = false;
+        }
+    }
+
+    /**
+     * @return {@code true} if the data set changed since the last update
+     */
+    public boolean isDirty() {
+        synchronized (pendingLock) {
+            return full || !changed.isEmpty();
+        }
+    }
+
+    private void changed(Collection<? extends OsmPrimitive> primitives) {
+        synchronized (pendingLock) {
+            if (!full) {
+                changed.addAll(primitives);
+            }
+        }
+    }
+
+    /**
+     * Revalidate what changed since the last update
+     *
+     * @return The current issues
+     */
+    public List<Issue> update() {
+        return update(NullProgressMonitor.INSTANCE, batch -> { });
+    }
+
+    /**
+     * Revalidate what changed since the last update
+     *
+     * @param monitor The progress monitor of a full validation, it validates everything again if it's canceled
+     * @param sink    Receives the issues of each batch of a full validation, or all issues after revalidating the
+     *                changes
+     * @return The current issues
+     */
+    public synchronized List<Issue> update(ProgressMonitor monitor, Consumer<List<Issue>> sink) {
+        // changes while validating are validated by the next update
+        final boolean all;
+        final List<OsmPrimitive> primitives;
+        synchronized (pendingLock) {
+            all = full;
+            primitives = new ArrayList<>(changed);
+            full = false;
+            changed.clear();
+        }
+
+        if (all) {
+            validateAll(monitor, sink);
+            if (monitor.isCanceled()) {
+                synchronized (pendingLock) {
+                    full = true;
+                }
+            }
+            return getIssues();
+        }
+
+        if (!primitives.isEmpty()) {
+            dataSet.getReadLock().lock();
+            try {
+                revalidate(getRelations(primitives));
+            } finally {
+                dataSet.getReadLock().unlock();
+            }
+        }
+
+        final List<Issue> issues = getIssues();
+        sink.accept(issues);
+        return issues;
+    }
+
+    /**
+     * @return The issues of the last update
+     */
+    public synchronized List<Issue> getIssues() {
+        final List<Issue> result = new ArrayList<>();
+        for (List<Issue> issues : relationIssues.values()) {
+            result.addAll(issues);
+        }
+        result.addAll(unreferenced.values());
+        return result;
+    }
+
+    private void validateAll(ProgressMonitor monitor, Consumer<List<Issue>> sink) {
+        junctions = new Validator.Junctions();
+        relationIssues.clear();
+        unreferenced.clear();
+
+        for (Issue i : validator.validate(dataSet, monitor, sink, junctions)) {
+            if (i.getRelation() != null) {
+                relationIssues.computeIfAbsent(i.getRelation(), r -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Validator.IncomingLanes.Key key : junctions.getKeys()) {
+            putUnreferenced(key);
+        }
+    }
+
+    /**
+     * @param primitives The changed primitives
+     * @return The {@link Validator#getRelations(Collection) relations affected} by the changes, and the changed
+     *         relations themselves: the issues of relations which were deleted or changed their type are dropped
+     */
+    private static Set<Relation> getRelations(Collection<OsmPrimitive> primitives) {
+        final Set<Relation> result = Validator.getRelations(primitives);
+        for (OsmPrimitive p : primitives) {
+            if (p instanceof Relation) {
+                result.add((Relation) p);
+            }
+        }
+        return result;
+    }
+
+    private void revalidate(Set<Relation> dirty) {
+        // the junctions the relations had their lanes at, and will have them at
+        final Set<Validator.IncomingLanes.Key> keys = new LinkedHashSet<>();
+        final Validator.Junctions moved = new Validator.Junctions();
+        for (Relation r : dirty) {
+            final Validator.IncomingLanes.Key key = junctions.getKey(r);
+            if (key != null) {
+                keys.add(key);
+            }
+            if (isLengths(r)) {
+                Validator.validateLengths(r, moved);
+            }
+        }
+        keys.addAll(moved.getKeys());
+
+        // all relations at those junctions are validated again
+        final Set<Relation> relations = new LinkedHashSet<>(dirty);
+        for (Validator.IncomingLanes.Key key : keys) {
+            relations.addAll(junctions.getRelations(key));
+        }
+
+        // the issues are replaced in place, so that unchanged issues keep their order
+        junctions.remove(keys);
+        for (Relation r : relations) {
+            if (isLengths(r)) {
+                putIssues(r, Validator.validateLengths(r, junctions));
+            } else if (!isConnectivity(r)) {
+                relationIssues.remove(r);
+            }
+        }
+        for (Relation r : relations) {
+            if (isConnectivity(r)) {
+                putIssues(r, Validator.validateTurns(r, junctions));
+            }
+        }
+
+        // the lanes referenced at the new junctions of relations changed too
+        for (Relation r : relations) {
+            final Validator.IncomingLanes.Key key = junctions.getKey(r);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        for (Validator.IncomingLanes.Key key : keys) {
+            putUnreferenced(key);
+        }
+    }
+
+    private void putIssues(Relation r, List<Issue> issues) {
+        if (issues.isEmpty()) {
+            relationIssues.remove(r);
+        } else {
+            relationIssues.put(r, issues);
+        }
+    }
+
+    private void putUnreferenced(Validator.IncomingLanes.Key key) {
+        final Issue issue = junctions.getUnreferenced(key);
+        if (issue == null) {
+            unreferenced.remove(key);
+        } else {
+            unreferenced.put(key, issue);
+        }
+    }
+
+    private boolean isLengths(Relation r) {
+        return isValidated(r) && Constants.TYPE_LENGTHS.equals(r.get("type"));
+    }
+
+    private boolean isConnectivity(Relation r) {
+        return isValidated(r) && Constants.TYPE_CONNECTIVITY.equals(r.get("type"));
+    }
+
+    private boolean isValidated(Relation r) {
+        return r.isUsable() && !r.hasIncompleteMembers() && r.getDataSet() == dataSet;
+    }
+}
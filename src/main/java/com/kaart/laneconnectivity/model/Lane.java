@@ -5,18 +5,15 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 import org.openstreetmap.josm.data.UndoRedoHandler;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
-import org.openstreetmap.josm.tools.Logging;
 public class Lane {
     public enum Kind {
         EXTRA_LEFT,
@@ -54,12 +51,8 @@ public class Lane {
     static List<Double> loadLengths(Relation r, String key, double lengthBound) {
         final List<Double> result = new ArrayList<>();
 
-        if (r != null && r.get(key) != null) {
-            for (String s : Constants.SPLIT_PATTERN.split(r.get(key))) {
-                // TODO what should the exact input be (there should probably be
-                // a unit (m))
-                final Double length = Double.parseDouble(s.trim());
-
+        if (r != null) {
+            for (Double length : ParsedTagCache.getLengths(r, key)) {
                 if (length >= lengthBound) {
                     result.add(length);
                 }
@@ -76,37 +69,7 @@ public class Lane {
      * @return The number of lanes to draw for each direction (oneway may return 0)
      */
     static int getRegularCount(Way w, Node end) {
-        final int count = TurnlanesUtils.parseIntTag(w, "lanes");
-        final boolean forward = w.lastNode().equals(end);
-
-        if (w.hasDirectionKeys()) {
-            return getRegularCountOneWay(w, forward, count);
-        } else {
-            return getRegularCountTwoWay(w, forward, count);
-        }
-    }
-
-    private static int getRegularCountOneWay(Way w, boolean forward, final int count) {
-        if (forward ^ "-1".equals(w.get("oneway"))) {
-            return count;
-        } else {
-            return 0;
-        }
-    }
-
-    private static int getRegularCountTwoWay(Way w, boolean forward, final int count) {
-        if (w.get("lanes:backward") != null) {
-            final int backwardCount = TurnlanesUtils.parseIntTag(w, "lanes:backward");
-            return forward ? count - backwardCount : backwardCount;
-        }
-
-        if (w.get("lanes:forward") != null) {
-            final int forwardCount = TurnlanesUtils.parseIntTag(w, "lanes:forward");
-            return forward ? forwardCount : count - forwardCount;
-        }
-
-        // default: round up in forward direction...
-        return forward ? (count + 1) / 2 : count / 2;
+        return LaneProfile.of(w).getRegularCount(w.lastNode().equals(end));
     }
 
     private final Road.End roadEnd;
@@ -137,6 +100,19 @@ public class Lane {
         }
     }
 
+    /**
+     * Copy a lane to the copy of its road end, without turns
+     *
+     * @param roadEnd The copied road end
+     * @param lane    The lane to copy
+     */
+    Lane(Road.End roadEnd, Lane lane) {
+        this.roadEnd = roadEnd;
+        this.index = lane.index;
+        this.kind = lane.kind;
+        this.length = lane.length;
+    }
+
     public Road getRoad() {
         return roadEnd.getRoad();
     }
@@ -238,9 +214,8 @@ public class Lane {
 
         //UndoRedoHandler.getInstance().add(cmd);
     }
-//here is my stuff, currently does not work for everything i need. has bug where keeps added relations even after it exists,
     /**
-     * Add a connectivity relation to a set of roads.
+     * Add a connectivity relation to a set of roads. An existing relation with the same members is extended instead.
      *
      * @param via The via node/ways
      * @param to  The ending road
@@ -248,47 +223,42 @@ public class Lane {
     public void addConnection(List<Road> via, Lane to) {
         final GenericCommand cmd = new GenericCommand(getOutgoingJunction().getNode().getDataSet(), tr("Add connectivity"));
 
-        Relation existing = null;
-        //to.getTurns() returns different set of turns compared to to.getRoad(0.etc . . .
-        for (Turn t : to.getRoad().getFromEnd().getTurns()) {
-            if (t.getFrom().getOutgoingRoadEnd().equals(getOutgoingRoadEnd()) && t.getVia().equals(via)) {
-                existing = t.getRelation();
+        final List<OsmPrimitive> viaMembers = new ArrayList<>();
+        if (via.isEmpty()) {
+            viaMembers.add(getOutgoingJunction().getNode());
+        } else {
+            for (Way w : TurnlanesUtils.flattenVia(getOutgoingJunction().getNode(), via,
+                    to.getRoad().getToEnd().getJunction().getNode())) {
+                viaMembers.add(w);
             }
         }
+        final ConnectivityIndex.Signature signature = new ConnectivityIndex.Signature(getOutgoingRoadEnd().getWay(),
+                viaMembers, to.getRoad().getToEnd().getWay());
+
+        final Set<Relation> existing = ConnectivityIndex.of(getOutgoingRoadEnd().getWay().getDataSet())
+                .getConnectivity(signature);
 
         final Relation r;
-        if (existing == null) {
+        if (existing.isEmpty()) {
             r = new Relation();
             r.put("type", Constants.TYPE_CONNECTIVITY);
 
-            r.addMember(new RelationMember(Constants.ROLE_FROM, getOutgoingRoadEnd().getWay()));
-            if (via.isEmpty()) {
-                r.addMember(new RelationMember(Constants.ROLE_VIA, getOutgoingJunction().getNode()));
-            } else {
-		Iterable<Way> ways = TurnlanesUtils.flattenVia(getOutgoingJunction().getNode(), via, to.getRoad().getToEnd().getJunction().getNode());
-                for (Way w : ways) {
-                    r.addMember(new RelationMember(Constants.ROLE_VIA, w));
-                }
-                if (ways == null) {
-			Logging.info("BLERG");
-                }
+            r.addMember(new RelationMember(Constants.ROLE_FROM, signature.getFrom()));
+            for (OsmPrimitive p : viaMembers) {
+                r.addMember(new RelationMember(Constants.ROLE_VIA, p));
             }
-            r.addMember(new RelationMember(Constants.ROLE_TO, to.getRoad().getToEnd().getWay()));
+            r.addMember(new RelationMember(Constants.ROLE_TO, signature.getTo()));
 
             cmd.add(r);
         } else {
-            r = existing;
+            r = existing.iterator().next();
         }
 
         final String key = Constants.TYPE_CONNECTIVITY;
-        final Map<Integer, Map<Integer, Boolean>> lanes = Turn.indices(r, key);
-        Map<Integer, Boolean> temporaryConnectMap = lanes.containsKey(getIndex()) ? lanes.get(getIndex())
-                : new TreeMap<>();
         // TODO use the actual lane the line was drawn to.
         // int numberOfLanes = to.getRoad().getToEnd().getWay().isOneway() != 0 ? Integer.parseInt(to.getRoad().getToEnd().getWay().get("lanes")) : to.getRoad().getToEnd().getLanes().size();
-        temporaryConnectMap.put(to.getIndex(), false);
-        lanes.putIfAbsent(getIndex(), temporaryConnectMap);
-        cmd.backup(r).put(key, Turn.join(lanes));
+        final ConnectivityTag lanes = ConnectivityTag.of(r, key).with(getIndex(), to.getIndex(), false);
+        cmd.backup(r).put(key, lanes.toString());
 
         UndoRedoHandler.getInstance().add(cmd);
     }
@@ -313,18 +283,10 @@ public class Lane {
         UndoRedoHandler.getInstance().add(cmd);
     }
 
-    void initialize() {
-        final Set<Turn> turns = Turn.load(getContainer(), Constants.ROLE_FROM, getOutgoingRoadEnd().getWay());
-
-        final Iterator<Turn> it = turns.iterator();
-        while (it.hasNext()) {
-            final Turn t = it.next();
-
-            if (!t.getFrom().equals(this)) {
-                it.remove();
-            }
-        }
-
+    /**
+     * @param turns The turns from this lane, see {@link Road.End#initialize()}
+     */
+    void initialize(Set<Turn> turns) {
         this.turns = Collections.unmodifiableSet(turns);
     }
 }
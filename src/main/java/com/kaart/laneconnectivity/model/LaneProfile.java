@@ -0,0 +1,190 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * The lane related tags of a way ({@code highway}, {@code lanes}, {@code lanes:forward}, {@code lanes:backward} and
+ * the oneway direction), parsed once and shared by the model and the validators.
+ * <p>
+ * Profiles are immutable and cached per data set in a bounded (LRU) {@link DataSetCache}, which never keeps a data
+ * set alive. Unlike the {@link ParsedTagCache} they are not checked against the current tags, instead the cache drops
+ * a profile on {@code TagsChangedEvent}. Ways without a data set don't fire events and are never cached.
+ */
+public final class LaneProfile {
+    static final int MAX_WAYS = 16384;
+
+    private static final Set<String> ROAD_HIGHWAY_VALUES = Collections.unmodifiableSet(new HashSet<>(Arrays
+            .asList("motorway", "motorway_link", "trunk", "trunk_link", "primary", "primary_link", "secondary",
+                    "secondary_link", "tertiary", "tertiary_link", "residential", "unclassified", "road", "living_street", "service",
+                    "track", "pedestrian", "raceway", "services")));
+
+    private static final String LANES = "lanes";
+    private static final String LANES_FORWARD = "lanes:forward";
+    private static final String LANES_BACKWARD = "lanes:backward";
+
+    private static final DataSetCache<Way, LaneProfile> CACHE = new DataSetCache<>(MAX_WAYS);
+
+    /**
+     * Get the profile of a way
+     *
+     * @param w The way
+     * @return The (possibly cached) profile
+     */
+    public static LaneProfile of(Way w) {
+        final LaneProfile cached = CACHE.get(w);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long v = CACHE.getVersion();
+        final LaneProfile profile = new LaneProfile(w);
+        CACHE.put(w, profile, v);
+        return profile;
+    }
+
+    /**
+     * Drop the cached profile of a primitive
+     *
+     * @param p The changed primitive, only ways are cached
+     */
+    public static void invalidate(OsmPrimitive p) {
+        if (p instanceof Way) {
+            CACHE.invalidate(p);
+        }
+    }
+
+    /**
+     * Start a new data version, dropping all cached profiles
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    static int size() {
+        return CACHE.size();
+    }
+
+    private final boolean road;
+    private final boolean oneway;
+    private final boolean reversed;
+    private final Integer lanes;
+    private final Integer forwardLanes;
+    private final Integer backwardLanes;
+    private final Map<String, String> errors;
+
+    private LaneProfile(Way w) {
+        final Map<String, String> invalid = new LinkedHashMap<>(2);
+
+        this.road = ROAD_HIGHWAY_VALUES.contains(w.get("highway"));
+        this.oneway = w.hasDirectionKeys();
+        this.reversed = "-1".equals(w.get("oneway"));
+        this.lanes = parse(w, LANES, invalid);
+        this.forwardLanes = parse(w, LANES_FORWARD, invalid);
+        this.backwardLanes = parse(w, LANES_BACKWARD, invalid);
+        this.errors = invalid.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(invalid);
+    }
+
+    private static Integer parse(Way w, String key, Map<String, String> invalid) {
+        final String value = w.get(key);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                invalid.put(key, value);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the {@code highway} tag is a road class, see {@link TurnlanesUtils#isRoad(Way)}
+     */
+    public boolean isRoad() {
+        return road;
+    }
+
+    /**
+     * @return {@code true} if the way has direction keys (e.g. {@code oneway=yes})
+     */
+    public boolean isOneway() {
+        return oneway;
+    }
+
+    /**
+     * @return {@code true} if the way is a oneway against its direction ({@code oneway=-1})
+     */
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * @return {@code true} if the way has a valid {@code lanes} tag
+     */
+    public boolean hasLanes() {
+        return lanes != null;
+    }
+
+    /**
+     * @return The value of the {@code lanes} tag
+     * @throws UnexpectedDataException if the tag is missing or invalid
+     */
+    public int getLanes() {
+        return get(LANES, lanes);
+    }
+
+    /**
+     * @return The tags that couldn't be parsed, mapped to their values
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Count the lanes in one direction, see {@link Lane#getRegularCount(Way, org.openstreetmap.josm.data.osm.Node)}
+     *
+     * @param forward {@code true} for the lanes towards the last node of the way
+     * @return The number of lanes in the direction (oneways may return 0)
+     * @throws UnexpectedDataException if a needed tag is missing or invalid
+     */
+    public int getRegularCount(boolean forward) {
+        final int count = getLanes();
+
+        if (oneway) {
+            return forward ^ reversed ? count : 0;
+        }
+
+        if (backwardLanes != null || errors.containsKey(LANES_BACKWARD)) {
+            final int backwardCount = get(LANES_BACKWARD, backwardLanes);
+            return forward ? count - backwardCount : backwardCount;
+        }
+
+        if (forwardLanes != null || errors.containsKey(LANES_FORWARD)) {
+            final int forwardCount = get(LANES_FORWARD, forwardLanes);
+            return forward ? forwardCount : count - forwardCount;
+        }
+
+        // default: round up in forward direction...
+        return forward ? (count + 1) / 2 : count / 2;
+    }
+
+    private int get(String key, Integer value) {
+        if (value != null) {
+            return value;
+        } else if (errors.containsKey(key)) {
+            throw UnexpectedDataException.Kind.INVALID_TAG_FORMAT.chuck(key, errors.get(key));
+        }
+
+        throw UnexpectedDataException.Kind.MISSING_TAG.chuck(key);
+    }
+}
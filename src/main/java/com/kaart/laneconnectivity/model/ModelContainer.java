@@ -1,9 +1,12 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.laneconnectivity.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -11,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
@@ -42,54 +46,54 @@ public final class ModelContainer {
         return EMPTY;
     }
 
-    private static void close(Set<Node> closedNodes, Set<Way> closedWays) {
-        boolean closed = false;
-
-        while (!closed) {
-            closed = true;
-
-            for (Node n : new ArrayList<>(closedNodes)) {
+    /**
+     * Extend the nodes and ways by everything that is connected to them through connectivity relations with via
+     * ways. Every node, way and relation is processed at most once.
+     *
+     * @param closedNodes The nodes to close, will be extended
+     * @param closedWays  The ways to close, will be extended
+     */
+    static void close(Set<Node> closedNodes, Set<Way> closedWays) {
+        final Deque<Node> nodes = new ArrayDeque<>(closedNodes);
+        final Deque<Way> ways = new ArrayDeque<>(closedWays);
+        final Set<Way> visitedWays = new HashSet<>();
+        final Set<Relation> visitedRelations = new HashSet<>();
+
+        while (!nodes.isEmpty() || !ways.isEmpty()) {
+            if (ways.isEmpty()) {
+                final Node n = nodes.poll();
                 for (Way w : TurnlanesUtils.filterRoads(n.getReferrers())) {
                     if (w.isFirstLastNode(n)) {
-                        closed &= close(closedNodes, closedWays, w);
+                        ways.add(w);
                     }
                 }
-
-                for (Way w : new ArrayList<>(closedWays)) {
-                    closed &= close(closedNodes, closedWays, w);
-                }
+                continue;
             }
-        }
-    }
-
-    private static boolean close(Set<Node> closedNodes, Set<Way> closedWays, Way w) {
-        boolean closed = true;
 
-        for (Relation r : org.openstreetmap.josm.tools.Utils.filteredCollection(w.getReferrers(), Relation.class)) {
-            if (!r.get("type").equals(Constants.TYPE_CONNECTIVITY)) {
+            final Way w = ways.poll();
+            if (!visitedWays.add(w)) {
                 continue;
             }
 
-            for (RelationMember m : r.getMembers()) {
-                if (m.getRole().equals(Constants.ROLE_VIA) && m.getMember().equals(w)) {
-                    closed &= close(closedNodes, closedWays, r);
+            for (Relation r : ConnectivityIndex.of(w.getDataSet()).getConnectivity(w, Constants.ROLE_VIA)) {
+                if (visitedRelations.add(r)) {
+                    close(closedNodes, closedWays, nodes, ways, r);
                 }
             }
         }
-
-        return closed;
     }
 
-    private static boolean close(Set<Node> closedNodes, Set<Way> closedWays, Relation r) {
-        boolean closed = true;
-
+    private static void close(Set<Node> closedNodes, Set<Way> closedWays, Deque<Node> nodes, Deque<Way> ways,
+            Relation r) {
         final List<Way> via = new ArrayList<>();
         for (RelationMember m : TurnlanesUtils.getMembers(r, Constants.ROLE_VIA)) {
             if (m.isWay()) {
-                closed &= !closedWays.add(m.getWay());
+                if (closedWays.add(m.getWay())) {
+                    ways.add(m.getWay());
+                }
                 via.add(m.getWay());
-            } else if (m.isNode()) {
-                closed &= !closedNodes.add(m.getNode());
+            } else if (m.isNode() && closedNodes.add(m.getNode())) {
+                nodes.add(m.getNode());
             }
         }
 
@@ -97,11 +101,13 @@ public final class ModelContainer {
             final Way from = TurnlanesUtils.getMemberWay(r, Constants.ROLE_FROM);
             final Way to = TurnlanesUtils.getMemberWay(r, Constants.ROLE_TO);
 
-            closed &= !closedNodes.add(TurnlanesUtils.lineUp(from, via.get(0)));
-            closed &= !closedNodes.add(TurnlanesUtils.lineUp(via.get(via.size() - 1), to));
+            for (Node n : Arrays.asList(TurnlanesUtils.lineUp(from, via.get(0)),
+                    TurnlanesUtils.lineUp(via.get(via.size() - 1), to))) {
+                if (closedNodes.add(n)) {
+                    nodes.add(n);
+                }
+            }
         }
-
-        return closed;
     }
 
     private static <E extends OsmPrimitive, C extends Collection<E>> C filterUsables(C collection) {
@@ -128,11 +134,18 @@ public final class ModelContainer {
 
     private boolean leftDirection;
 
+    /**
+     * The relations referring to the roads and junctions when the model was built, see
+     * {@link #isRelevant(OsmPrimitive)}
+     */
+    private final Set<Relation> relations;
+
     private ModelContainer(Set<Node> primaryNodes, Set<Way> primaryWays, boolean empty, boolean leftDirection) {
         if (empty) {
             this.primaryNodes = Collections.unmodifiableSet(new HashSet<>(primaryNodes));
             this.primaryWays = Collections.unmodifiableSet(new HashSet<>(primaryWays));
             this.empty = true;
+            this.relations = Collections.emptySet();
         } else {
             final Set<Node> closedNodes = filterUsables(new HashSet<>(primaryNodes));
             final Set<Way> closedWays = filterUsables(new HashSet<>(primaryWays));
@@ -157,10 +170,41 @@ public final class ModelContainer {
             }
 
             this.empty = junctions.isEmpty();
+            this.relations = collectRelations();
         }
         this.leftDirection = leftDirection;
     }
 
+    /**
+     * Copy the junctions, roads and lanes of a container. Only the road ends affected by the changed relations load
+     * their turns again, the turns of the others are copied.
+     *
+     * @param base    The container to copy
+     * @param changed The changed relations
+     */
+    private ModelContainer(ModelContainer base, Set<Relation> changed) {
+        this.primaryNodes = base.primaryNodes;
+        this.primaryWays = base.primaryWays;
+        this.empty = base.empty;
+        this.leftDirection = base.leftDirection;
+
+        for (Node n : base.junctions.keySet()) {
+            register(new Junction(this, n));
+        }
+
+        final Map<Road, Road> copies = new HashMap<>();
+        for (Map.Entry<Way, Road> e : base.roads.entrySet()) {
+            roads.put(e.getKey(), copies.computeIfAbsent(e.getValue(), r -> new Road(this, r)));
+        }
+
+        final Set<Road.End> reload = base.getAffectedEnds(changed);
+        for (Map.Entry<Road, Road> e : copies.entrySet()) {
+            e.getValue().initialize(e.getKey(), reload, copies);
+        }
+
+        this.relations = collectRelations();
+    }
+
     /**
      * Create a Set of Pairs of Way and Junctions
      *
@@ -298,6 +342,230 @@ public final class ModelContainer {
         return new ModelContainer(primaryNodes, primaryWays, false, leftDirection);
     }
 
+    /**
+     * Update the model after some primitives changed. Changes to connectivity relations that don't extend the
+     * selection only reload the turns of the road ends they affect: the new container reuses the junctions, routes,
+     * lengths relations and lanes of this one and copies the turns of the other road ends, without closing the
+     * selection or loading lengths again. Any other change to the model (e.g. a lane count, the geometry or a lengths
+     * relation) falls back to {@link #recalculate()}. This container is never changed, so it can still be displayed
+     * while the update is built.
+     *
+     * @param changed The changed primitives, {@code null} if unknown
+     * @return A new container for the changed data
+     */
+    public ModelContainer update(Collection<? extends OsmPrimitive> changed) {
+        if (empty || changed == null) {
+            return recalculate();
+        }
+
+        final Set<Relation> relations = new HashSet<>();
+        for (OsmPrimitive p : changed) {
+            if (!isTurnChange(p)) {
+                return recalculate();
+            } else if (p instanceof Relation) {
+                relations.add((Relation) p);
+            }
+        }
+
+        return new ModelContainer(this, relations);
+    }
+
+    /**
+     * @param changed Changed connectivity relations
+     * @return The road ends with turns of the relations, and the road ends at the ways the relations refer to now
+     */
+    private Set<Road.End> getAffectedEnds(Set<Relation> changed) {
+        final Set<Road.End> result = new HashSet<>();
+        if (changed.isEmpty()) {
+            return result;
+        }
+
+        final Set<Way> members = new HashSet<>();
+        for (Relation r : changed) {
+            members.addAll(org.openstreetmap.josm.tools.Utils.filteredCollection(r.getMemberPrimitivesList(),
+                    Way.class));
+        }
+
+        for (Road r : new HashSet<>(roads.values())) {
+            for (Road.End e : Arrays.asList(r.getFromEnd(), r.getToEnd())) {
+                if (members.contains(e.getWay()) || hasTurnOf(e, changed)) {
+                    result.add(e);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasTurnOf(Road.End end, Set<Relation> relations) {
+        for (Turn t : end.getTurns()) {
+            if (relations.contains(t.getRelation())) {
+                return true;
+            }
+        }
+        for (Lane l : end.getLanes()) {
+            for (Turn t : l.getTurns()) {
+                if (relations.contains(t.getRelation())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a change of a primitive could change the model. The footprint of the model consists of the selected
+     * nodes and ways, the junctions, the roads with their nodes and the relations referring to any of them.
+     *
+     * @param p The changed primitive
+     * @return {@code false} if the model won't change
+     */
+    public boolean isRelevant(OsmPrimitive p) {
+        if (p instanceof Node) {
+            final Node n = (Node) p;
+            if (isFootprint(n)) {
+                return true;
+            }
+
+            for (Way w : org.openstreetmap.josm.tools.Utils.filteredCollection(n.getReferrers(), Way.class)) {
+                if (isFootprint(w)) {
+                    return true;
+                }
+            }
+
+            return false;
+        } else if (p instanceof Way) {
+            final Way w = (Way) p;
+            // a way ending at a junction may be (or become) one of its roads
+            return isFootprint(w) || w.getNodesCount() > 0 && (isFootprint(w.firstNode()) || isFootprint(w.lastNode()));
+        } else if (p instanceof Relation) {
+            final Relation r = (Relation) p;
+            // the relation may have lost its members
+            if (relations.contains(r)) {
+                return true;
+            }
+
+            for (OsmPrimitive m : r.getMemberPrimitivesList()) {
+                if (m instanceof Node && isFootprint((Node) m) || m instanceof Way && isFootprint((Way) m)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isFootprint(Node n) {
+        return primaryNodes.contains(n) || hasJunction(n);
+    }
+
+    private boolean isFootprint(Way w) {
+        return primaryWays.contains(w) || hasRoad(w);
+    }
+
+    /**
+     * Collect the relations referring to the model while it's built, since relations that are changed later may no
+     * longer refer to it when the change is checked
+     */
+    private Set<Relation> collectRelations() {
+        final Set<Relation> result = new HashSet<>();
+        for (Way w : roads.keySet()) {
+            result.addAll(org.openstreetmap.josm.tools.Utils.filteredCollection(w.getReferrers(), Relation.class));
+        }
+        for (Node n : junctions.keySet()) {
+            result.addAll(org.openstreetmap.josm.tools.Utils.filteredCollection(n.getReferrers(), Relation.class));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * @return {@code true} if the change can be applied by reloading turns
+     */
+    private boolean isTurnChange(OsmPrimitive p) {
+        if (p instanceof Node) {
+            if (hasJunction((Node) p)) {
+                return false;
+            }
+
+            for (Way w : org.openstreetmap.josm.tools.Utils.filteredCollection(p.getReferrers(), Way.class)) {
+                if (hasRoad(w)) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else if (p instanceof Way) {
+            final Way w = (Way) p;
+            return !hasRoad(w) && (w.getNodesCount() == 0
+                    || !hasJunction(w.firstNode()) && !hasJunction(w.lastNode()));
+        } else if (p instanceof Relation) {
+            return isTurnChange((Relation) p);
+        }
+
+        return true;
+    }
+
+    private boolean isTurnChange(Relation r) {
+        boolean roadMember = false;
+        for (Way w : org.openstreetmap.josm.tools.Utils.filteredCollection(r.getMemberPrimitivesList(), Way.class)) {
+            roadMember |= hasRoad(w);
+        }
+
+        if (!roadMember) {
+            // doesn't touch this model
+            return true;
+        } else if (!Constants.TYPE_CONNECTIVITY.equals(r.get("type"))) {
+            // lengths relations, changed types, ...
+            return false;
+        }
+
+        final List<Way> via = new ArrayList<>();
+        for (RelationMember m : TurnlanesUtils.getMembers(r, Constants.ROLE_VIA)) {
+            if (m.isWay()) {
+                via.add(m.getWay());
+            }
+        }
+
+        return via.isEmpty() || isClosed(r, via);
+    }
+
+    /**
+     * @return {@code true} if a relation with via ways wouldn't change the closure of the primary nodes and ways
+     */
+    private boolean isClosed(Relation r, List<Way> via) {
+        if (r.isDeleted() || r.getDataSet() == null || !primaryWays.containsAll(via)) {
+            return false;
+        }
+
+        try {
+            final Way from = TurnlanesUtils.getMemberWay(r, Constants.ROLE_FROM);
+            final Way to = TurnlanesUtils.getMemberWay(r, Constants.ROLE_TO);
+
+            return primaryNodes.contains(TurnlanesUtils.lineUp(from, via.get(0)))
+                    && primaryNodes.contains(TurnlanesUtils.lineUp(via.get(via.size() - 1), to));
+        } catch (RuntimeException e) {
+            // let recalculate() deal with broken relations
+            return false;
+        }
+    }
+
+    /**
+     * @return The data set of the selected primitives, {@code null} if there is none
+     */
+    public DataSet getDataSet() {
+        for (Node n : primaryNodes) {
+            if (n.getDataSet() != null) {
+                return n.getDataSet();
+            }
+        }
+        for (Way w : primaryWays) {
+            if (w.getDataSet() != null) {
+                return w.getDataSet();
+            }
+        }
+
+        return null;
+    }
+
     public boolean isPrimary(Junction j) {
         return primaryNodes.contains(j.getNode());
     }
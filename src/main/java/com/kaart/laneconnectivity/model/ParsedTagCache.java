@@ -0,0 +1,140 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+
+/**
+ * A bounded (LRU) cache of parsed relation tags ({@code connectivity} and {@code turnlanes:lengths} values), so that
+ * repeated model builds don't split the same strings over and over again.
+ * <p>
+ * Entries are keyed by relation and kept per data set in a {@link DataSetCache}, which drops the entries of changed
+ * relations and never keeps a data set alive. Relations without a data set are parsed every time. Since JOSM
+ * primitives don't carry a local modification counter, an entry additionally remembers the raw value it was parsed
+ * from and is reparsed if the value changed, so a missed event never yields stale results.
+ */
+public final class ParsedTagCache {
+    static final int MAX_RELATIONS = 4096;
+
+    private static final class Entry {
+        final String value;
+        final Object parsed;
+
+        Entry(String value, Object parsed) {
+            this.value = value;
+            this.parsed = parsed;
+        }
+    }
+
+    private static final DataSetCache<Relation, Map<String, Entry>> CACHE = new DataSetCache<>(MAX_RELATIONS);
+
+    private ParsedTagCache() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Get the parsed connectivity value of a relation
+     *
+     * @param r   The relation
+     * @param key The key with a value in the connectivity format
+     * @return The parsed value
+     * @throws UnexpectedDataException if the value can't be parsed
+     */
+    static ConnectivityTag getConnectivity(Relation r, String key) {
+        final long v = CACHE.getVersion();
+        final String value = r.get(key);
+        final Object cached = get(r, key, value);
+
+        if (cached instanceof ConnectivityTag) {
+            return (ConnectivityTag) cached;
+        }
+
+        final ConnectivityTag parsed = ConnectivityTag.parse(key, value);
+        put(r, key, value, parsed, v);
+        return parsed;
+    }
+
+    /**
+     * Get the parsed lengths of a {@code turnlanes:lengths} relation
+     *
+     * @param r   The relation
+     * @param key The key with a list of lengths (e.g. {@code lengths:left})
+     * @return The lengths, in the order of the tag
+     * @throws NumberFormatException if the value can't be parsed
+     */
+    static List<Double> getLengths(Relation r, String key) {
+        final long v = CACHE.getVersion();
+        final String value = r.get(key);
+        final Object cached = get(r, key, value);
+
+        if (cached instanceof List) {
+            @SuppressWarnings("unchecked")
+            final List<Double> lengths = (List<Double>) cached;
+            return lengths;
+        }
+
+        final List<Double> parsed = new ArrayList<>();
+        if (value != null) {
+            for (String s : Constants.SPLIT_PATTERN.split(value)) {
+                // TODO what should the exact input be (there should probably be
+                // a unit (m))
+                parsed.add(Double.parseDouble(s.trim()));
+            }
+        }
+        final List<Double> lengths = Collections.unmodifiableList(parsed);
+        put(r, key, value, lengths, v);
+        return lengths;
+    }
+
+    private static synchronized Object get(Relation r, String key, String value) {
+        final Map<String, Entry> entries = CACHE.get(r);
+        final Entry e = entries == null ? null : entries.get(key);
+        return e != null && Objects.equals(e.value, value) ? e.parsed : null;
+    }
+
+    /**
+     * Cache a parsed value, unless the data version changed while it was parsed
+     */
+    private static synchronized void put(Relation r, String key, String value, Object parsed, long parsedVersion) {
+        final Map<String, Entry> entries = CACHE.get(r);
+        if (parsedVersion != CACHE.getVersion()) {
+            return;
+        } else if (entries != null) {
+            entries.put(key, new Entry(value, parsed));
+        } else {
+            final Map<String, Entry> created = new HashMap<>(4);
+            created.put(key, new Entry(value, parsed));
+            CACHE.put(r, created, parsedVersion);
+        }
+    }
+
+    /**
+     * Drop the cached values of a primitive. Changed relations are dropped by the cache itself, this frees entries
+     * early after changes that don't fire events.
+     *
+     * @param p The changed primitive, only relations are cached
+     */
+    public static void invalidate(OsmPrimitive p) {
+        if (p instanceof Relation) {
+            CACHE.invalidate(p);
+        }
+    }
+
+    /**
+     * Start a new data version, dropping all cached values.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    static int size() {
+        return CACHE.size();
+    }
+}
@@ -7,21 +7,21 @@ import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.openstreetmap.josm.data.UndoRedoHandler;
 import org.openstreetmap.josm.data.osm.AbstractPrimitive;
 import org.openstreetmap.josm.data.osm.Node;
-import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.tools.Pair;
 
 import com.kaart.laneconnectivity.CollectionUtils;
-import com.kaart.laneconnectivity.model.Route.Segment;
 
 public class Road {
     public final class End {
@@ -49,6 +49,24 @@ public class Road {
             junction.addRoad(getWay());
         }
 
+        /**
+         * Copy an end of another road, with its lanes but without turns
+         */
+        private End(End end) {
+            this.from = end.from;
+            this.junction = container.getJunction(end.junction.getNode());
+            this.lengthsLeft = end.lengthsLeft;
+            this.lengthsRight = end.lengthsRight;
+            this.extraLengthLeft = end.extraLengthLeft;
+            this.extraLengthRight = end.extraLengthRight;
+            this.lanes = new ArrayList<>(end.lanes.size());
+            for (Lane l : end.lanes) {
+                lanes.add(new Lane(this, l));
+            }
+
+            junction.addRoad(getWay());
+        }
+
         private End(boolean from, Junction junction) {
             this.from = from;
             this.junction = junction;
@@ -277,8 +295,29 @@ public class Road {
         void initialize() {
             this.turns = Collections.unmodifiableSet(Turn.load(getContainer(), Constants.ROLE_TO, getWay()));
 
+            // load the turns from this end once and hand them to their lanes
+            final Map<Lane, Set<Turn>> turnsByLane = new HashMap<>();
+            for (Turn t : Turn.load(getContainer(), Constants.ROLE_FROM, getWay())) {
+                turnsByLane.computeIfAbsent(t.getFrom(), k -> new HashSet<>()).add(t);
+            }
+
             for (Lane l : lanes) {
-                l.initialize();
+                l.initialize(turnsByLane.getOrDefault(l, Collections.<Turn>emptySet()));
+            }
+        }
+
+        /**
+         * Initialize the copy of an end, see {@link Road#initialize(Road, Set, Map)}
+         */
+        private void initialize(End end, Set<End> reload, Map<Road, Road> copies) {
+            if (reload.contains(end)) {
+                initialize();
+                return;
+            }
+
+            this.turns = Collections.unmodifiableSet(Turn.copy(end.turns, copies));
+            for (Lane l : lanes) {
+                l.initialize(Turn.copy(end.getLane(l.getKind(), l.getIndex()).getTurns(), copies));
             }
         }
     }
@@ -287,22 +326,13 @@ public class Road {
         final List<Relation> left = new ArrayList<>();
         final List<Relation> right = new ArrayList<>();
 
-        for (OsmPrimitive p : w.getReferrers()) {
-            if (p.getType() != OsmPrimitiveType.RELATION) {
-                continue;
+        for (Relation r : ConnectivityIndex.of(w.getDataSet()).getLengths(w, n)) {
+            if (r.get(Constants.LENGTHS_KEY_LENGTHS_LEFT) != null) {
+                left.add(r);
             }
 
-            Relation r = (Relation) p;
-
-            if (Constants.TYPE_LENGTHS.equals(r.get("type")) && isRightDirection(r, w, n)) {
-
-                if (r.get(Constants.LENGTHS_KEY_LENGTHS_LEFT) != null) {
-                    left.add(r);
-                }
-
-                if (r.get(Constants.LENGTHS_KEY_LENGTHS_RIGHT) != null) {
-                    right.add(r);
-                }
+            if (r.get(Constants.LENGTHS_KEY_LENGTHS_RIGHT) != null) {
+                right.add(r);
             }
         }
 
@@ -322,25 +352,6 @@ public class Road {
         );
     }
 
-    /**
-     * @param r
-     *            lengths relation
-     * @param w
-     *            the way to check for
-     * @param n
-     *            first or last node of w, determines the direction
-     * @return whether the turn lane goes into the direction of n
-     */
-    private static boolean isRightDirection(Relation r, Way w, Node n) {
-        for (Segment s : Route.load(r).getSegments()) {
-            if (w.equals(s.getWay())) {
-                return n.equals(s.getEnd());
-            }
-        }
-
-        return false;
-    }
-
     private final ModelContainer container;
     private final Route route;
     private final End fromEnd;
@@ -367,6 +378,19 @@ public class Road {
         this.toEnd = new End(false, container.getJunction(route.getEnd()));
     }
 
+    /**
+     * Copy a road into another container, see {@link ModelContainer#update(java.util.Collection)}
+     *
+     * @param container The container of the copy, with copies of the junctions of the road
+     * @param road      The road to copy
+     */
+    Road(ModelContainer container, Road road) {
+        this.container = container;
+        this.route = road.route;
+        this.fromEnd = new End(road.fromEnd);
+        this.toEnd = new End(road.toEnd);
+    }
+
     public End getFromEnd() {
         return fromEnd;
     }
@@ -418,4 +442,17 @@ public class Road {
         fromEnd.initialize();
         toEnd.initialize();
     }
+
+    /**
+     * Initialize a copy, see {@link #Road(ModelContainer, Road)}: the ends in {@code reload} load their turns again,
+     * the other ends copy the turns of the original ends
+     *
+     * @param road   The copied road
+     * @param reload The ends of the original roads whose turns changed
+     * @param copies The copies of the original roads
+     */
+    void initialize(Road road, Set<End> reload, Map<Road, Road> copies) {
+        fromEnd.initialize(road.fromEnd, reload, copies);
+        toEnd.initialize(road.toEnd, reload, copies);
+    }
 }
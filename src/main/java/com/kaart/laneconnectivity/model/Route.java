@@ -3,7 +3,9 @@ package com.kaart.laneconnectivity.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.Relation;
@@ -16,6 +18,7 @@ public final class Route {
         private final Node end;
 
         private final List<Node> nodes;
+        private final double length;
 
         Segment(Node start, Way way, Node end) {
             this.start = start;
@@ -28,6 +31,11 @@ public final class Route {
             }
 
             this.nodes = Collections.unmodifiableList(ns);
+            this.length = computeLength(ns);
+        }
+
+        private static double computeLength(List<Node> nodes) {
+            return Distance.get().near(nodes.get(0).getCoor()).length(nodes);
         }
 
         public Node getStart() {
@@ -46,15 +54,10 @@ public final class Route {
             return nodes;
         }
 
+        /**
+         * @return The length in meters, as of the creation of the segment
+         */
         public double getLength() {
-            double length = 0;
-
-            Node last = nodes.get(0);
-            for (Node n : nodes.subList(1, nodes.size())) {
-                length += last.getCoor().greatCircleDistance(n.getCoor());
-                last = n;
-            }
-
             return length;
         }
 
@@ -143,17 +146,31 @@ public final class Route {
             }
 
             final Node start = TurnlanesUtils.getOppositeEnd(w, end);
-            segments.add(0, new Segment(start, w, end));
+            segments.add(new Segment(start, w, end));
             end = start;
         }
+        Collections.reverse(segments);
 
         return new Route(segments);
     }
 
     private final List<Segment> segments;
+    /**
+     * {@code offsets[i]} is the length of the first {@code i} segments, the last element is the length of the route
+     */
+    private final double[] offsets;
+    /** The index of the last segment of each way */
+    private final Map<Way, Integer> indices;
 
     private Route(List<Segment> segments) {
         this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+        this.offsets = new double[segments.size() + 1];
+        this.indices = new HashMap<>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            offsets[i + 1] = offsets[i] + segments.get(i).getLength();
+            indices.put(segments.get(i).getWay(), i);
+        }
     }
 
     public List<Segment> getSegments() {
@@ -171,32 +188,51 @@ public final class Route {
         return Collections.unmodifiableList(ns);
     }
 
+    /**
+     * @param w A way of the route
+     * @return The length of the route after (the last segment of) {@code w}
+     * @throws IllegalArgumentException if the way isn't part of the route
+     */
     public double getLengthFrom(Way w) {
-        double length = Double.NEGATIVE_INFINITY;
-
-        for (Segment s : getSegments()) {
-            length += s.getLength();
+        final Integer i = indices.get(w);
 
-            if (w.equals(s.getWay())) {
-                length = 0;
-            }
-        }
-
-        if (length < 0) {
+        if (i == null) {
             throw new IllegalArgumentException("Way must be part of the route.");
         }
 
-        return length;
+        return getLength() - offsets[i + 1];
     }
 
     public double getLength() {
-        double length = 0;
+        return offsets[segments.size()];
+    }
 
-        for (Segment s : getSegments()) {
-            length += s.getLength();
-        }
+    /**
+     * @param i The index of a segment
+     * @return The length of the route before the segment
+     */
+    public double getOffset(int i) {
+        return offsets[i];
+    }
 
-        return length;
+    /**
+     * Find the segment at a distance from the start of the route
+     *
+     * @param offset The distance from the start in meters, clamped to the route
+     * @return The index of the segment containing the offset (the first one on a boundary between two segments)
+     */
+    public int getSegmentIndex(double offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (offsets[mid + 1] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     public Node getStart() {
@@ -5,15 +5,12 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 
 import org.openstreetmap.josm.data.UndoRedoHandler;
 import org.openstreetmap.josm.data.osm.Node;
@@ -50,6 +47,15 @@ public final class Turn {
     static Set<Turn> load(ModelContainer c, String role, OsmPrimitive primitive, String relationType) {
         final Set<Turn> result = new HashSet<>();
 
+        if (Constants.TYPE_CONNECTIVITY.equals(relationType) && primitive instanceof Way) {
+            for (Relation r : ConnectivityIndex.of(primitive.getDataSet()).getConnectivity((Way) primitive, role)) {
+                if (r.isUsable()) {
+                    result.addAll(load(c, r));
+                }
+            }
+            return result;
+        }
+
         for (Relation r : org.openstreetmap.josm.tools.Utils.filteredCollection(primitive.getReferrers(), Relation.class)) {
             if (!r.isUsable() || !r.get("type").equals(relationType)) {
                 continue;
@@ -125,8 +131,7 @@ public final class Turn {
         n = TurnlanesUtils.getOppositeEnd(to, n);
 
         final Set<Turn> result = new HashSet<>();
-        // TODO don't use keySet, use all of the information.
-        for (int i : indices(r, Constants.TYPE_CONNECTIVITY).keySet()) {
+        for (int i : ConnectivityTag.of(r).getFromLanes()) {
             result.add(new Turn(r, fromRoadEnd.getLane(Lane.Kind.REGULAR, i), via, toRoadEnd));
         }
         return result;
@@ -139,36 +144,21 @@ public final class Turn {
      * @param key The key that needs to be split
      * @return A map of a map of Integers
      *         ({@code <Lane From, <Lane To, Optional>>}). Lanes counts start at 1.
+     * @see ConnectivityTag#of(Relation, String)
      */
     static Map<Integer, Map<Integer, Boolean>> indices(Relation r, String key) {
-        final String joined = r.get(key);
+        return ConnectivityTag.of(r, key).toMap();
+    }
 
-        if (joined == null) {
-            return new TreeMap<>();
-        }
-        final Map<Integer, Map<Integer, Boolean>> result = new HashMap<>();
-        String[] lanes = joined.split(Constants.LANE_SEPARATOR, 0);
-        for (int i = 0; i < lanes.length; i++) {
-            String[] lane = lanes[i].split(Constants.CONNECTIVITY_TO_FROM_SEPARATOR, 0);
-            int laneNumber = Integer.parseInt(lane[0].trim());
-            Map<Integer, Boolean> connections = new HashMap<>();
-            String[] toLanes = Constants.SPLIT_PATTERN.split(lane[1]);
-            for (int j = 0; j < toLanes.length; j++) {
-                String toLane = toLanes[j].trim();
-                if (Constants.CONNECTIVITY_OPTIONAL_LANES_PATTERN.matcher(toLane).matches()) {
-                    toLane = toLane.replace("(", "").replace(")", "").trim();
-                    connections.put(Integer.parseInt(toLane), true);
-                } else {
-			connections.put(Integer.parseInt(toLane), false);
-                }
-            }
-            result.put(laneNumber, connections);
-        }
-        return result;
+    public Map<Integer, Map<Integer, Boolean>> connectivityIndicesForGui() {
+        return getConnectivity().toMap();
     }
 
-    public Map<Integer, Map<Integer, Boolean>> connectivityIndicesForGui(){
-	return indices(relation,Constants.TYPE_CONNECTIVITY);
+    /**
+     * @return The parsed {@code connectivity} tag of the relation of this turn
+     */
+    public ConnectivityTag getConnectivity() {
+        return ConnectivityTag.of(relation);
     }
 
     private static Set<Turn> loadWithViaNode(ModelContainer c, Relation r) {
@@ -186,8 +176,7 @@ public final class Turn {
         final Road.End toRoadEnd = j.getRoadEnd(to);
 
         final Set<Turn> result = new HashSet<>();
-        // TODO don't use keySet, use all of the information.
-        for (int i : indices(r, Constants.TYPE_CONNECTIVITY).keySet()) {
+        for (int i : ConnectivityTag.of(r).getFromLanes()) {
             result.add(new Turn(r, fromRoadEnd.getLane(Lane.Kind.REGULAR, i), Collections.<Road>emptyList(), toRoadEnd));
         }
         return result;
@@ -220,28 +209,37 @@ public final class Turn {
      * @param lanes The map conforming to
      *              {@code Map<laneFrom, Map<laneTo, isOptional>>}
      * @return The list of integers joined by the appropriate separators
+     * @see ConnectivityTag#toString()
      */
     public static String join(Map<Integer, Map<Integer, Boolean>> lanes) {
-        ArrayList<String> connections = new ArrayList<>();
-        for (Entry<Integer, Map<Integer, Boolean>> entry : lanes.entrySet()) {
-            StringBuilder currentConnection = new StringBuilder();
-            currentConnection.append(entry.getKey()).append(Constants.CONNECTIVITY_TO_FROM_SEPARATOR);
-            if (entry.getValue().size() > 0) {
-                ArrayList<String> laneConnections = new ArrayList<>();
-                for (Entry<Integer, Boolean> connection : entry.getValue().entrySet()) {
-                    StringBuilder add = new StringBuilder();
-                    if (connection.getValue())
-                        add.append("(");
-                    add.append(connection.getKey());
-                    if (connection.getValue())
-                        add.append(")");
-                    laneConnections.add(add.toString());
-                }
-                currentConnection.append(String.join(Constants.COMMA_SEPARATOR, laneConnections));
+        return ConnectivityTag.fromMap(lanes).toString();
+    }
+
+    /**
+     * Copy turns to the copies of their roads, see {@link ModelContainer#update(java.util.Collection)}
+     *
+     * @param turns  The turns to copy
+     * @param copies The copies of the roads of the turns
+     * @return The copied turns
+     */
+    static Set<Turn> copy(Set<Turn> turns, Map<Road, Road> copies) {
+        final Set<Turn> result = new HashSet<>();
+        for (Turn t : turns) {
+            final List<Road> via = new ArrayList<>(t.via.size());
+            for (Road r : t.via) {
+                via.add(copies.get(r));
             }
-            connections.add(currentConnection.toString());
+
+            final Lane from = copy(t.from.getOutgoingRoadEnd(), copies).getLane(t.from.getKind(), t.from.getIndex());
+            result.add(new Turn(t.relation, from, via.isEmpty() ? Collections.<Road>emptyList() : via,
+                    copy(t.to, copies)));
         }
-        return String.join("|", connections);
+        return result;
+    }
+
+    private static Road.End copy(Road.End end, Map<Road, Road> copies) {
+        final Road road = copies.get(end.getRoad());
+        return end.isFromEnd() ? road.getFromEnd() : road.getToEnd();
     }
 
     private final Relation relation;
@@ -283,21 +281,22 @@ public final class Turn {
     }
 
     void remove(GenericCommand cmd) {
+        ConnectivityTag connectivity = getConnectivity();
+        final int fromLanes = connectivity.getFromLanes().length;
         // TODO don't use keySet, use all of the information.
-        final List<Integer> connectivity = new ArrayList<>(indices(relation, Constants.TYPE_CONNECTIVITY).keySet());
         final List<Integer> extraLanes = new ArrayList<>(indices(relation, Constants.TURN_KEY_EXTRA_LANES).keySet());
 
         // TODO understand & document
-        if (connectivity.size() + extraLanes.size() == 1 && (from.isExtra() ^ !connectivity.isEmpty())) {
+        if (fromLanes + extraLanes.size() == 1 && (from.isExtra() ^ fromLanes != 0)) {
             cmd.backup(relation).setDeleted(true);
             // relation.getDataSet().removePrimitive(relation.getPrimitiveId());
         } else if (from.isExtra()) {
             extraLanes.remove(Integer.valueOf(from.getIndex()));
         } else {
-            connectivity.remove(Integer.valueOf(from.getIndex()));
+            connectivity = connectivity.withoutFrom(from.getIndex());
         }
 
-        cmd.backup(relation).put(Constants.TYPE_CONNECTIVITY, connectivity.isEmpty() ? null : join(connectivity));
+        cmd.backup(relation).put(Constants.TYPE_CONNECTIVITY, connectivity.toTagValue());
         cmd.backup(relation).put(Constants.TURN_KEY_EXTRA_LANES, extraLanes.isEmpty() ? null : join(extraLanes));
     }
 
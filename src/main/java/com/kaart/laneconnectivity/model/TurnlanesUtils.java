@@ -5,10 +5,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.openstreetmap.josm.data.osm.Node;
@@ -21,17 +21,12 @@ import org.openstreetmap.josm.data.osm.Way;
 import com.kaart.laneconnectivity.CollectionUtils;
 
 public final class TurnlanesUtils {
-    private static final Set<String> ROAD_HIGHWAY_VALUES = Collections.unmodifiableSet(new HashSet<>(Arrays
-            .asList("motorway", "motorway_link", "trunk", "trunk_link", "primary", "primary_link", "secondary",
-                    "secondary_link", "tertiary", "tertiary_link", "residential", "unclassified", "road", "living_street", "service",
-                    "track", "pedestrian", "raceway", "services")));
-
     private TurnlanesUtils() {
         // Hide default constructor for utilities classes
     }
 
     public static boolean isRoad(Way w) {
-        return ROAD_HIGHWAY_VALUES.contains(w.get("highway"));
+        return LaneProfile.of(w).isRoad();
     }
 
     public static List<Way> filterRoads(List<OsmPrimitive> of) {
@@ -155,37 +150,78 @@ public final class TurnlanesUtils {
      * @return ordered list
      * @throws IllegalArgumentException
      *             if the ways can't be ordered
+     * @see #orderWays(Iterable, Iterable, Collection)
      */
     public static List<Route> orderWays(Iterable<Way> ways, Iterable<Node> nodes) {
-        final List<Way> ws = new LinkedList<>(CollectionUtils.toList(ways));
+        final List<Way> unordered = new ArrayList<>();
+        final List<Route> result = orderWays(ways, nodes, unordered);
+
+        if (!unordered.isEmpty()) {
+            throw new IllegalArgumentException("Ways can't be ordered.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Orders the {@code ways} like {@link #orderWays(Iterable, Iterable)}, but collects the ways that can't be
+     * ordered instead of failing. Ways are picked in iteration order, and the ways are looked up through an index of
+     * their first and last nodes, so this runs in linear time.
+     *
+     * @param ways      ways to be ordered
+     * @param nodes     start/end nodes
+     * @param unordered receives the ways that aren't part of any path
+     * @return the paths that could be ordered
+     */
+    public static List<Route> orderWays(Iterable<Way> ways, Iterable<Node> nodes, Collection<Way> unordered) {
         final Set<Node> ns = new HashSet<>(CollectionUtils.toList(nodes));
+        final WayIndex index = new WayIndex(CollectionUtils.toList(ways), ns);
 
         final List<Route> result = new ArrayList<>();
+        final List<Way> path = new ArrayList<>();
 
-        while (!ws.isEmpty()) {
-            result.add(findPath(ws, ns));
+        Way w;
+        while ((w = index.nextStart()) != null) {
+            final Route route = findPath(index, ns, w, path);
+
+            if (route != null) {
+                result.add(route);
+            } else {
+                unordered.addAll(path);
+            }
         }
 
+        // the remaining ways don't touch any of the nodes
+        unordered.addAll(index.remaining());
+
         return result;
     }
 
-    private static Route findPath(List<Way> ws, Set<Node> ns) {
-        final Way w = findPathSegment(ws, ns);
+    /**
+     * @return the path starting with {@code w}, or {@code null} if it doesn't end in one of the nodes (the ways of
+     *         the broken path are left in {@code result})
+     */
+    private static Route findPath(WayIndex index, Set<Node> ns, Way w, List<Way> result) {
         final boolean first = ns.contains(w.firstNode());
         final boolean last = ns.contains(w.lastNode());
 
         if (first && last) {
             return Route.create(Arrays.asList(w), w.firstNode());
-        } else if (!first && !last) {
-            throw new AssertionError();
         }
 
-        final List<Way> result = new ArrayList<>();
+        result.clear();
         result.add(w);
         Node n = first ? w.lastNode() : w.firstNode();
         while (true) {
-            final Way next = findPathSegment(ws, Arrays.asList(n));
+            final Way next = index.next(n);
+            if (next == null) {
+                return null;
+            }
+
             result.add(next);
+            if (next.firstNode().equals(next.lastNode())) {
+                return null;
+            }
             n = getOppositeEnd(next, n);
 
             if (ns.contains(n)) {
@@ -194,19 +230,101 @@ public final class TurnlanesUtils {
         }
     }
 
-    private static Way findPathSegment(List<Way> ws, Collection<Node> ns) {
-        final Iterator<Way> it = ws.iterator();
+    /**
+     * An index of ways by their first and last nodes. Ways are handed out in the order they were given, and at most
+     * once.
+     */
+    static final class WayIndex {
+        private final List<Way> ways;
+        private final boolean[] used;
+        private final Map<Node, int[]> byNode = new HashMap<>();
+        /** The index into {@link #byNode} of the first way that might not be used, per node */
+        private final Map<Node, Integer> cursors = new HashMap<>();
+        /** The ways that touch one of the start/end nodes */
+        private final int[] starts;
+        private int startCursor;
+
+        WayIndex(List<Way> ways) {
+            this(ways, Collections.<Node>emptySet());
+        }
+
+        /**
+         * @param ways The ways to index
+         * @param ns   The start/end nodes, see {@link #nextStart()}
+         */
+        WayIndex(List<Way> ways, Set<Node> ns) {
+            this.ways = ways;
+            this.used = new boolean[ways.size()];
+
+            final Map<Node, List<Integer>> tmp = new HashMap<>();
+            final List<Integer> tmpStarts = new ArrayList<>();
+            for (int i = 0; i < ways.size(); i++) {
+                final Way w = ways.get(i);
+                tmp.computeIfAbsent(w.firstNode(), k -> new ArrayList<>(4)).add(i);
+                if (!w.lastNode().equals(w.firstNode())) {
+                    tmp.computeIfAbsent(w.lastNode(), k -> new ArrayList<>(4)).add(i);
+                }
+                if (ns.contains(w.firstNode()) || ns.contains(w.lastNode())) {
+                    tmpStarts.add(i);
+                }
+            }
+
+            for (Map.Entry<Node, List<Integer>> e : tmp.entrySet()) {
+                byNode.put(e.getKey(), toArray(e.getValue()));
+            }
+            this.starts = toArray(tmpStarts);
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            final int[] result = new int[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = list.get(i);
+            }
+            return result;
+        }
+
+        private Way use(int i) {
+            used[i] = true;
+            return ways.get(i);
+        }
+
+        /**
+         * @return the first unused way that starts or ends in one of the start/end nodes
+         */
+        Way nextStart() {
+            while (startCursor < starts.length && used[starts[startCursor]]) {
+                startCursor++;
+            }
+            return startCursor < starts.length ? use(starts[startCursor]) : null;
+        }
 
-        while (it.hasNext()) {
-            final Way w = it.next();
+        /**
+         * @return the first unused way that starts or ends in {@code n}
+         */
+        Way next(Node n) {
+            final int[] candidates = byNode.get(n);
+            if (candidates == null) {
+                return null;
+            }
 
-            if (ns.contains(w.firstNode()) || ns.contains(w.lastNode())) {
-                it.remove();
-                return w;
+            int cursor = cursors.getOrDefault(n, 0);
+            while (cursor < candidates.length && used[candidates[cursor]]) {
+                cursor++;
             }
+            cursors.put(n, cursor);
+
+            return cursor < candidates.length ? use(candidates[cursor]) : null;
         }
 
-        throw new IllegalArgumentException("Ways can't be ordered.");
+        List<Way> remaining() {
+            final List<Way> result = new ArrayList<>();
+            for (int i = 0; i < ways.size(); i++) {
+                if (!used[i]) {
+                    result.add(ways.get(i));
+                }
+            }
+            return result;
+        }
     }
 
     public static Iterable<Way> flattenVia(Node start, List<Road> via, Node end) {
@@ -6,25 +6,55 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
-import org.openstreetmap.josm.tools.Utils;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 
 import com.kaart.laneconnectivity.model.Issue.QuickFix;
 
+/**
+ * Validates the lengths and connectivity relations of a data set.
+ * <p>
+ * The relations are validated independently of each other, only the lanes referenced at each junction are shared, so
+ * a {@link #Validator(boolean) parallel} validator splits them across the cores of the common fork/join pool. The
+ * issues are the same, in the same order, either way.
+ * <p>
+ * The relations are validated in batches of {@link #BATCH_SIZE}, each under the read lock of the data set, so that a
+ * validation in the background reports its issues while it runs and can be canceled between batches.
+ */
 public class Validator {
-    private static final class IncomingLanes {
-        private static final class Key {
+    /**
+     * The number of relations from which a parallel validator validates them in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * The number of relations validated at once
+     */
+    static final int BATCH_SIZE = 4 * PARALLEL_THRESHOLD;
+
+    static final class IncomingLanes {
+        static final class Key {
             final Node junction;
             final Way from;
 
@@ -65,6 +95,13 @@ public class Validator {
             }
         }
 
+        /**
+         * Orders the lanes by their junction and from way, for issues in a stable order
+         */
+        static final Comparator<IncomingLanes> ORDER = Comparator
+                .<IncomingLanes>comparingLong(l -> l.key.junction.getUniqueId())
+                .thenComparingLong(l -> l.key.from.getUniqueId());
+
         final Key key;
         private final int extraLeft;
         private final int regular;
@@ -79,7 +116,16 @@ public class Validator {
             this.bitset = new BitSet(extraLeft + regular + extraRight);
         }
 
-        public boolean existsRegular(int l) {
+        /**
+         * @param other The lanes of the same key from another lengths relation
+         * @return The lanes with the maximum count of each kind
+         */
+        IncomingLanes max(IncomingLanes other) {
+            return new IncomingLanes(key, Math.max(extraLeft, other.extraLeft), Math.max(regular, other.regular),
+                    Math.max(extraRight, other.extraRight));
+        }
+
+        public synchronized boolean existsRegular(int l) {
             if (l > 0 && l <= regular) {
                 bitset.set(extraLeft + l - 1);
                 return true;
@@ -88,7 +134,7 @@ public class Validator {
             return false;
         }
 
-        public boolean existsExtra(int l) {
+        public synchronized boolean existsExtra(int l) {
             if (l < 0 && Math.abs(l) <= extraLeft) {
                 bitset.set(Math.abs(l) - 1);
                 return true;
@@ -99,56 +145,357 @@ public class Validator {
             return false;
         }
 
-        public int unreferenced() {
+        public synchronized int unreferenced() {
             return extraLeft + regular + extraRight - bitset.cardinality();
         }
     }
 
+    /**
+     * The incoming lanes at the junctions of a validation, and which relations they were derived from
+     */
+    static final class Junctions {
+        private final Map<IncomingLanes.Key, IncomingLanes> lanes = new ConcurrentHashMap<>();
+        private final Map<IncomingLanes.Key, Set<Relation>> relations = new ConcurrentHashMap<>();
+        private final Map<Relation, IncomingLanes.Key> keys = new ConcurrentHashMap<>();
+
+        /**
+         * @param r     The lengths relation
+         * @param added The incoming lanes of the relation, merged with those of other lengths relations
+         */
+        void putLengths(Relation r, IncomingLanes added) {
+            lanes.merge(added.key, added, IncomingLanes::max);
+            add(r, added.key);
+        }
+
+        /**
+         * @param r    The connectivity relation
+         * @param via  The junction
+         * @param from The from way
+         * @return The incoming lanes for the turns of the relation
+         */
+        IncomingLanes getTurns(Relation r, Node via, Way from) {
+            final IncomingLanes result = lanes.computeIfAbsent(new IncomingLanes.Key(via, from),
+                    key -> new IncomingLanes(key, 0, Lane.getRegularCount(from, via), 0));
+            add(r, result.key);
+            return result;
+        }
+
+        private void add(Relation r, IncomingLanes.Key key) {
+            keys.put(r, key);
+            relations.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(r);
+        }
+
+        IncomingLanes.Key getKey(Relation r) {
+            return keys.get(r);
+        }
+
+        IncomingLanes getLanes(IncomingLanes.Key key) {
+            return lanes.get(key);
+        }
+
+        Set<IncomingLanes.Key> getKeys() {
+            return lanes.keySet();
+        }
+
+        Set<Relation> getRelations(IncomingLanes.Key key) {
+            final Set<Relation> result = relations.get(key);
+            return result == null ? Collections.<Relation>emptySet() : result;
+        }
+
+        /**
+         * Forget the lanes at some junctions, to derive them again
+         *
+         * @param removed The junctions, all relations of which are forgotten as well
+         */
+        void remove(Collection<IncomingLanes.Key> removed) {
+            for (IncomingLanes.Key key : removed) {
+                lanes.remove(key);
+                final Set<Relation> derived = relations.remove(key);
+                if (derived != null) {
+                    for (Relation r : derived) {
+                        keys.remove(r, key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param key The junction
+         * @return The warning about the unreferenced lanes at the junction, {@code null} if all lanes are referenced
+         */
+        Issue getUnreferenced(IncomingLanes.Key key) {
+            final IncomingLanes l = lanes.get(key);
+            final int unreferenced = l == null ? 0 : l.unreferenced();
+            return unreferenced == 0 ? null : Issue.newWarning(Arrays.asList(key.junction, key.from),
+                    tr("{0} lanes are not referenced in any turn-relation.", unreferenced));
+        }
+
+        /**
+         * @return The warnings about unreferenced lanes at all junctions, ordered by junction and from way
+         */
+        List<Issue> getUnreferenced() {
+            final List<IncomingLanes> unreferenced = new ArrayList<>();
+            for (IncomingLanes l : lanes.values()) {
+                if (l.unreferenced() > 0) {
+                    unreferenced.add(l);
+                }
+            }
+            unreferenced.sort(IncomingLanes.ORDER);
+
+            final List<Issue> result = new ArrayList<>(unreferenced.size());
+            for (IncomingLanes l : unreferenced) {
+                result.add(getUnreferenced(l.key));
+            }
+            return result;
+        }
+    }
+
+    private final boolean parallel;
+
+    /**
+     * Create a validator validating on the calling thread
+     */
+    public Validator() {
+        this(false);
+    }
+
+    /**
+     * @param parallel {@code true} to validate large data sets on multiple threads
+     */
+    public Validator(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     public List<Issue> validate(DataSet dataSet) {
-        final List<Relation> lenghts = new ArrayList<>();
-        final List<Relation> turns = new ArrayList<>();
+        return validate(dataSet, NullProgressMonitor.INSTANCE, batch -> { });
+    }
+
+    /**
+     * Validate the relations of a data set in batches
+     *
+     * @param dataSet The data set, may be {@code null}
+     * @param monitor The progress monitor, the validation stops after the current batch once it's canceled
+     * @param sink    Receives the issues of each batch as soon as they are found
+     * @return All issues, only the issues found so far if the validation was canceled
+     */
+    public List<Issue> validate(DataSet dataSet, ProgressMonitor monitor, Consumer<List<Issue>> sink) {
+        return validate(dataSet, monitor, sink, new Junctions());
+    }
+
+    /**
+     * @param junctions Receives the incoming lanes at the junctions
+     * @see #validate(DataSet, ProgressMonitor, Consumer)
+     */
+    List<Issue> validate(DataSet dataSet, ProgressMonitor monitor, Consumer<List<Issue>> sink, Junctions junctions) {
+        if (dataSet == null) {
+            return new ArrayList<>();
+        }
 
-        for (Relation r : Utils.filteredCollection(dataSet.allPrimitives(), Relation.class)) {
-            if (!r.isUsable()) {
-                continue;
+        final ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        return validate(dataSet, index.getLengthsRelations(), index.getConnectivityRelations(), monitor, sink,
+                junctions);
+    }
+
+    /**
+     * Validate the relations with member ways in an area, e.g. the map view. The relations at the junctions of those
+     * relations are validated as well, so that the referenced lanes are complete.
+     *
+     * @param dataSet The data set, may be {@code null}
+     * @param area    The area
+     * @param monitor The progress monitor, the validation stops after the current batch once it's canceled
+     * @param sink    Receives the issues of each batch as soon as they are found
+     * @return All issues, only the issues found so far if the validation was canceled
+     */
+    public List<Issue> validate(DataSet dataSet, BBox area, ProgressMonitor monitor, Consumer<List<Issue>> sink) {
+        if (dataSet == null) {
+            return new ArrayList<>();
+        }
+
+        final Set<Relation> relations;
+        dataSet.getReadLock().lock();
+        try {
+            relations = getRelations(dataSet, area);
+        } finally {
+            dataSet.getReadLock().unlock();
+        }
+
+        return validate(dataSet, relations, monitor, sink);
+    }
+
+    /**
+     * Validate some of the relations of a data set, e.g. the {@link #getRelations(Collection) relations affected} by
+     * a change
+     *
+     * @param dataSet   The data set
+     * @param relations The lengths and connectivity relations to validate
+     * @param monitor   The progress monitor, the validation stops after the current batch once it's canceled
+     * @param sink      Receives the issues of each batch as soon as they are found
+     * @return All issues, only the issues found so far if the validation was canceled
+     */
+    public List<Issue> validate(DataSet dataSet, Collection<Relation> relations, ProgressMonitor monitor,
+            Consumer<List<Issue>> sink) {
+        final List<Relation> lengths = new ArrayList<>();
+        final List<Relation> turns = new ArrayList<>();
+        dataSet.getReadLock().lock();
+        try {
+            for (Relation r : relations) {
+                if (Constants.TYPE_LENGTHS.equals(r.get("type"))) {
+                    lengths.add(r);
+                } else {
+                    turns.add(r);
+                }
             }
+        } finally {
+            dataSet.getReadLock().unlock();
+        }
+
+        return validate(dataSet, lengths, turns, monitor, sink, new Junctions());
+    }
+
+    /**
+     * @param dataSet The data set
+     * @param area    The area
+     * @return The lengths and connectivity relations with member ways in the area, and the relations of the other
+     *         member ways of those relations
+     */
+    static Set<Relation> getRelations(DataSet dataSet, BBox area) {
+        final Set<Relation> result = new LinkedHashSet<>();
+        // ways are indexed spatially, relations aren't
+        for (Way w : dataSet.searchWays(area)) {
+            addRelations(w, result);
+        }
 
-            final String type = r.get("type");
-            if (Constants.TYPE_LENGTHS.equals(type)) {
-                lenghts.add(r);
-            } else if (Constants.TYPE_CONNECTIVITY.equals(type)) {
-                turns.add(r);
+        return addJunctions(result);
+    }
+
+    /**
+     * Get the relations whose issues may change with some primitives: the changed relations, the relations of changed
+     * member ways and of ways with changed nodes, and the relations of the other member ways of those relations, since
+     * the lanes referenced at a junction depend on all its relations.
+     *
+     * @param primitives The changed primitives
+     * @return The lengths and connectivity relations affected by the changes
+     */
+    public static Set<Relation> getRelations(Collection<? extends OsmPrimitive> primitives) {
+        final Set<Relation> result = new LinkedHashSet<>();
+        final Set<Way> ways = new LinkedHashSet<>();
+        for (OsmPrimitive p : primitives) {
+            if (p instanceof Relation) {
+                addRelation(p, result);
+            } else if (p instanceof Way) {
+                ways.add((Way) p);
+            } else if (p instanceof Node) {
+                for (OsmPrimitive referrer : p.getReferrers()) {
+                    if (referrer instanceof Way) {
+                        ways.add((Way) referrer);
+                    } else {
+                        addRelation(referrer, result);
+                    }
+                }
             }
         }
 
-        final List<Issue> issues = new ArrayList<>();
+        for (Way w : ways) {
+            addRelations(w, result);
+        }
 
-        final Map<IncomingLanes.Key, IncomingLanes> incomingLanes = new HashMap<>();
-        issues.addAll(validateLengths(lenghts, incomingLanes));
-        issues.addAll(validateTurns(turns, incomingLanes));
+        return addJunctions(result);
+    }
 
-        for (IncomingLanes lanes : incomingLanes.values()) {
-            if (lanes.unreferenced() > 0) {
-                issues.add(Issue.newWarning(Arrays.asList(lanes.key.junction, lanes.key.from),
-                        tr("{0} lanes are not referenced in any turn-relation.", lanes.unreferenced())));
+    /**
+     * @param relations Some relations
+     * @return The relations, with the relations of the other member ways of the relations
+     */
+    private static Set<Relation> addJunctions(Set<Relation> relations) {
+        for (Relation r : new ArrayList<>(relations)) {
+            for (RelationMember m : r.getMembers()) {
+                if (m.isWay()) {
+                    addRelations(m.getWay(), relations);
+                }
             }
         }
 
-        return issues;
+        return relations;
+    }
+
+    private static void addRelations(Way w, Set<Relation> relations) {
+        for (OsmPrimitive p : w.getReferrers()) {
+            addRelation(p, relations);
+        }
+    }
+
+    private static void addRelation(OsmPrimitive p, Set<Relation> relations) {
+        if (p instanceof Relation && p.isUsable() && (Constants.TYPE_LENGTHS.equals(p.get("type"))
+                || Constants.TYPE_CONNECTIVITY.equals(p.get("type")))) {
+            relations.add((Relation) p);
+        }
     }
 
-    private static List<Issue> validateLengths(List<Relation> lengths,
-            Map<IncomingLanes.Key, IncomingLanes> incomingLanes) {
+    private List<Issue> validate(DataSet dataSet, List<Relation> lenghts, List<Relation> turns,
+            ProgressMonitor monitor, Consumer<List<Issue>> sink, Junctions junctions) {
         final List<Issue> issues = new ArrayList<>();
 
-        for (Relation r : lengths) {
-            issues.addAll(validateLengths(r, incomingLanes));
+        monitor.beginTask(tr("Validating turn lanes"), lenghts.size() + turns.size());
+        try {
+            // the lanes of all lengths relations are needed before the turns can be checked against them
+            if (validate(dataSet, lenghts, r -> validateLengths(r, junctions), monitor, sink, issues)
+                    && validate(dataSet, turns, r -> validateTurns(r, junctions), monitor, sink, issues)) {
+                report(junctions.getUnreferenced(), sink, issues);
+            }
+
+            return issues;
+        } finally {
+            monitor.finishTask();
+        }
+    }
+
+    /**
+     * @return {@code false} if the validation was canceled
+     */
+    private boolean validate(DataSet dataSet, List<Relation> relations, Function<Relation, List<Issue>> validation,
+            ProgressMonitor monitor, Consumer<List<Issue>> sink, List<Issue> issues) {
+        for (int i = 0; i < relations.size(); i += BATCH_SIZE) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+
+            final List<Relation> batch = relations.subList(i, Math.min(i + BATCH_SIZE, relations.size()));
+            final List<Issue> found;
+            dataSet.getReadLock().lock();
+            try {
+                // relations may have been deleted by edits between batches, or be cut off by the extent of the data
+                found = validate(batch, r -> r.isUsable() && !r.hasIncompleteMembers() ? validation.apply(r)
+                        : Collections.<Issue>emptyList());
+            } finally {
+                dataSet.getReadLock().unlock();
+            }
+
+            report(found, sink, issues);
+            monitor.worked(batch.size());
         }
 
-        return issues;
+        return true;
+    }
+
+    private static void report(List<Issue> found, Consumer<List<Issue>> sink, List<Issue> issues) {
+        if (!found.isEmpty()) {
+            issues.addAll(found);
+            sink.accept(Collections.unmodifiableList(found));
+        }
     }
 
-    private static List<Issue> validateLengths(Relation r, Map<IncomingLanes.Key, IncomingLanes> incomingLanes) {
+    /**
+     * @param relations  The relations to validate
+     * @param validation The validation of a single relation
+     * @return The issues of all relations, in the order of the relations
+     */
+    private List<Issue> validate(List<Relation> relations, Function<Relation, List<Issue>> validation) {
+        final Stream<Relation> stream = parallel && relations.size() >= PARALLEL_THRESHOLD
+                ? relations.parallelStream() : relations.stream();
+        return stream.map(validation).flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    static List<Issue> validateLengths(Relation r, Junctions junctions) {
         final List<Issue> issues = new ArrayList<>();
 
         try {
@@ -179,7 +526,7 @@ public class Validator {
                         + " extra-lanes which are longer than its ways."));
             }
 
-            putIncomingLanes(route, left, right, incomingLanes);
+            putIncomingLanes(r, route, left, right, junctions);
 
             return issues;
 
@@ -189,21 +536,14 @@ public class Validator {
         }
     }
 
-    private static void putIncomingLanes(Route route, List<Double> left, List<Double> right,
-            Map<IncomingLanes.Key, IncomingLanes> incomingLanes) {
+    private static void putIncomingLanes(Relation r, Route route, List<Double> left, List<Double> right,
+            Junctions junctions) {
         final Node end = route.getLastSegment().getEnd();
         final Way way = route.getLastSegment().getWay();
 
         final IncomingLanes.Key key = new IncomingLanes.Key(end, way);
         final IncomingLanes lanes = new IncomingLanes(key, left.size(), Lane.getRegularCount(way, end), right.size());
-        final IncomingLanes old = incomingLanes.put(key, lanes);
-
-        if (old != null) {
-            incomingLanes.put(
-                    key,
-                    new IncomingLanes(key, Math.max(lanes.extraLeft, old.extraLeft), Math.max(lanes.regular,
-                            old.regular), Math.max(lanes.extraRight, old.extraRight)));
-        }
+        junctions.putLengths(r, lanes);
     }
 
     private static Route validateLengthsWays(Relation r, Node end, List<Issue> issues) {
@@ -218,7 +558,7 @@ public class Validator {
         Node current = end;
         for (Way w : ways) {
             if (!w.isFirstLastNode(current)) {
-                return orderWays(r, ways, current, issues, "ways", "lengths");
+                return orderWays(r, ways, current, issues, "ways", "lengths", Constants.LENGTHS_ROLE_WAYS);
             }
 
             current = TurnlanesUtils.getOppositeEnd(w, current);
@@ -228,71 +568,62 @@ public class Validator {
     }
 
     private static Route orderWays(final Relation r, List<Way> ways, Node end, List<Issue> issues, String role,
-            String type) {
-        final List<Way> unordered = new ArrayList<>(ways);
+            String type, String memberRole) {
+        final TurnlanesUtils.WayIndex index = new TurnlanesUtils.WayIndex(ways);
         final List<Way> ordered = new ArrayList<>(ways.size());
         final Set<Node> ends = new HashSet<>(); // to find cycles
 
         Node current = end;
-        findNext: while (!unordered.isEmpty()) {
+        while (ordered.size() < ways.size()) {
             if (!ends.add(current)) {
                 issues.add(Issue.newError(r, ways, "The " + role + " of the " + type
                         + "-relation are unordered (and contain cycles)."));
                 return null;
             }
 
-            Iterator<Way> it = unordered.iterator();
-            while (it.hasNext()) {
-                final Way w = it.next();
-
-                if (w.isFirstLastNode(current)) {
-                    it.remove();
-                    ordered.add(w);
-                    current = TurnlanesUtils.getOppositeEnd(w, current);
-                    continue findNext;
-                }
+            final Way w = index.next(current);
+            if (w == null) {
+                issues.add(Issue.newError(r, ways, "The " + role + " of the " + type + "-relation are disconnected."));
+                return null;
+            } else if (w.firstNode().equals(w.lastNode())) {
+                issues.add(Issue.newError(r, ways, "The " + role + " of the " + type
+                        + "-relation are unordered (and contain cycles)."));
+                return null;
             }
 
-            issues.add(Issue.newError(r, ways, "The " + role + " of the " + type + "-relation are disconnected."));
-            return null;
+            ordered.add(w);
+            current = TurnlanesUtils.getOppositeEnd(w, current);
         }
 
         final QuickFix quickFix = new QuickFix(tr("Put the ways in order.")) {
             @Override
             public boolean perform() {
-                for (int i = r.getMembersCount() - 1; i >= 0; --i) {
-                    final RelationMember m = r.getMember(i);
-
-                    if (m.isWay() && Constants.LENGTHS_ROLE_WAYS.equals(m.getRole())) {
-                        r.removeMember(i);
+                // replace the ways in a single pass, at the position of the first one
+                final List<RelationMember> members = new ArrayList<>(r.getMembersCount());
+                boolean added = false;
+                for (RelationMember m : r.getMembers()) {
+                    if (!m.isWay() || !memberRole.equals(m.getRole())) {
+                        members.add(m);
+                    } else if (!added) {
+                        for (Way w : ordered) {
+                            members.add(new RelationMember(memberRole, w));
+                        }
+                        added = true;
                     }
                 }
 
-                for (Way w : ordered) {
-                    r.addMember(new RelationMember(Constants.LENGTHS_ROLE_WAYS, w));
-                }
+                r.setMembers(members);
 
                 return true;
             }
         };
 
-        issues.add(Issue.newError(r, ways, "The ways of the lengths-relation are unordered.", quickFix));
+        issues.add(Issue.newError(r, ways, "The " + role + " of the " + type + "-relation are unordered.", quickFix));
 
         return Route.create(ordered, end);
     }
 
-    private static List<Issue> validateTurns(List<Relation> turns,
-            Map<IncomingLanes.Key, IncomingLanes> incomingLanes) {
-        final List<Issue> issues = new ArrayList<>();
-
-        for (Relation r : turns) {
-            issues.addAll(validateTurns(r, incomingLanes));
-        }
-
-        return issues;
-    }
-
-    private static List<Issue> validateTurns(Relation r, Map<IncomingLanes.Key, IncomingLanes> incomingLanes) {
+    static List<Issue> validateTurns(Relation r, Junctions junctions) {
         final List<Issue> issues = new ArrayList<>();
 
         try {
@@ -320,7 +651,7 @@ public class Validator {
                 Node current = fromJunctionNode;
                 for (Way via : vias) {
                     if (!via.isFirstLastNode(current)) {
-                        orderWays(r, vias, current, issues, "via-ways", "turns");
+                        orderWays(r, vias, current, issues, "via-ways", "turns", Constants.ROLE_VIA);
                         break;
                     }
 
@@ -342,7 +673,7 @@ public class Validator {
             if (!issues.isEmpty()) {
                 return issues;
             }
-            final IncomingLanes lanes = get(incomingLanes, fromJunctionNode, from);
+            final IncomingLanes lanes = junctions.getTurns(r, fromJunctionNode, from);
 
             for (int l : splitInts(r, Constants.TURN_KEY_LANES, issues)) {
                 if (!lanes.existsRegular(l)) {
@@ -380,17 +711,4 @@ public class Validator {
 
         return result;
     }
-
-    private static IncomingLanes get(Map<IncomingLanes.Key, IncomingLanes> incomingLanes, Node via, Way from) {
-        final IncomingLanes.Key key = new IncomingLanes.Key(via, from);
-        final IncomingLanes lanes = incomingLanes.get(key);
-
-        if (lanes == null) {
-            final IncomingLanes newLanes = new IncomingLanes(key, 0, Lane.getRegularCount(from, via), 0);
-            incomingLanes.put(key, newLanes);
-            return newLanes;
-        } else {
-            return lanes;
-        }
-    }
 }
@@ -0,0 +1,480 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.spi.preferences.MemoryPreferences;
+
+import com.kaart.laneconnectivity.model.ConnectivityIndex;
+import com.kaart.laneconnectivity.model.Issue;
+import com.kaart.laneconnectivity.model.UnexpectedDataException;
+import com.kaart.laneconnectivity.model.Validator;
+import com.kaart.laneconnectivity.validation.RelationLoader.Element;
+import com.kaart.laneconnectivity.validation.RelationLoader.Elements;
+
+/**
+ * Validates OSM files without a running JOSM, e.g. in a build pipeline:
+ *
+ * <pre>
+ * BatchValidator [--format jsonl|csv] [--output &lt;file&gt;] [--change &lt;file.osc&gt;] &lt;file.osm[.bz2|.gz]&gt;...
+ * </pre>
+ *
+ * Only the relations to validate and their members are loaded, by the {@link RelationLoader}. Each file is validated
+ * by the {@link Validator} and the {@link ConnectivityRelationCheck}. The issues are written as they are found, as
+ * JSON Lines or CSV, followed by a summary with the timings of each file (a row with the source {@code summary} for
+ * CSV).
+ * <p>
+ * With an osmChange file, e.g. of a changeset, only the relations affected by the change are validated, before and
+ * after applying it to each file, and only the issues it introduced or resolved are written.
+ */
+public final class BatchValidator {
+    /**
+     * The format of the report
+     */
+    public enum Format {
+        JSONL,
+        CSV
+    }
+
+    /**
+     * The number of relations visited by the check before its errors are written and released
+     */
+    private static final int CHECK_BATCH_SIZE = 1024;
+
+    private final Format format;
+    private final Writer out;
+    private int issues;
+
+    /**
+     * @param format The format of the report
+     * @param out    The writer of the report
+     */
+    BatchValidator(Format format, Writer out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    /**
+     * Validate OSM files
+     *
+     * @param args The arguments, see {@link BatchValidator}
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @param args The arguments, see {@link BatchValidator}
+     * @return The exit status: 0 on success, 1 if a file couldn't be read or the report couldn't be written, 2 if the
+     *         arguments are invalid
+     */
+    static int run(String[] args) {
+        Format format = Format.JSONL;
+        String output = null;
+        String changeFile = null;
+        final List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--format".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    format = Format.valueOf(args[++i].toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException e) {
+                    return usage();
+                }
+            } else if ("--output".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            } else if ("--change".equals(args[i]) && i + 1 < args.length) {
+                changeFile = args[++i];
+            } else if (args[i].startsWith("--")) {
+                return usage();
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+
+        if (files.isEmpty()) {
+            return usage();
+        }
+
+        Config.setPreferencesInstance(new MemoryPreferences());
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+
+        OsmChange change = null;
+        if (changeFile != null) {
+            try {
+                change = OsmChange.read(new File(changeFile));
+            } catch (IOException | IllegalDataException e) {
+                System.err.println(changeFile + ": " + e.getMessage());
+                return 1;
+            }
+        }
+
+        int status = 0;
+        try (Writer out = output == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            final BatchValidator validator = new BatchValidator(format, out);
+            validator.writeHeader(change != null);
+            for (File f : files) {
+                try {
+                    if (change == null) {
+                        validator.validate(f);
+                    } else {
+                        validator.validate(f, change);
+                    }
+                } catch (IOException | IllegalDataException e) {
+                    System.err.println(f + ": " + e.getMessage());
+                    status = 1;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            status = 1;
+        }
+
+        return status;
+    }
+
+    /**
+     * @return The exit status for invalid arguments
+     */
+    private static int usage() {
+        System.err.println("Usage: BatchValidator [--format jsonl|csv] [--output <file>] [--change <file.osc>] "
+                + "<file.osm[.bz2|.gz]>...");
+        return 2;
+    }
+
+    /**
+     * @param file The OSM file, may be compressed
+     * @throws IOException          if the file can't be read or the report can't be written
+     * @throws IllegalDataException if the file isn't valid OSM data
+     */
+    void validate(File file) throws IOException, IllegalDataException {
+        final long start = System.nanoTime();
+        final DataSet dataSet = RelationLoader.load(file);
+        validate(file.getName(), dataSet, millis(start));
+    }
+
+    /**
+     * @param name       The name of the data set in the report
+     * @param dataSet    The data set
+     * @param loadMillis The time it took to load the data set
+     * @throws IOException if the report can't be written
+     */
+    void validate(String name, DataSet dataSet, long loadMillis) throws IOException {
+        final int before = issues;
+        final ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        final List<Relation> connectivity = index.getConnectivityRelations();
+        final int relations = connectivity.size() + index.getLengthsRelations().size();
+
+        long start = System.nanoTime();
+        final IOException[] failure = new IOException[1];
+        new Validator(true).validate(dataSet, NullProgressMonitor.INSTANCE, batch -> {
+            try {
+                for (Issue i : batch) {
+                    writeIssue(name, null, Finding.of(i));
+                }
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        final long validateMillis = millis(start);
+
+        start = System.nanoTime();
+        final ConnectivityRelationCheck check = new ConnectivityRelationCheck();
+        check.startTest(NullProgressMonitor.INSTANCE);
+        for (int i = 0; i < connectivity.size(); i++) {
+            final Finding malformed = visit(check, connectivity.get(i));
+            if (malformed != null) {
+                writeIssue(name, null, malformed);
+            }
+            if (i % CHECK_BATCH_SIZE == CHECK_BATCH_SIZE - 1) {
+                writeErrors(name, check);
+            }
+        }
+        check.endTest();
+        writeErrors(name, check);
+        final long checkMillis = millis(start);
+
+        writeSummary(name, relations, issues - before, loadMillis, validateMillis, checkMillis);
+    }
+
+    private void writeErrors(String name, ConnectivityRelationCheck check) throws IOException {
+        for (TestError e : check.getErrors()) {
+            writeIssue(name, null, Finding.of(e));
+        }
+        check.clear();
+    }
+
+    /**
+     * Validate the relations of a file affected by a change, before and after the change
+     *
+     * @param file   The OSM file, may be compressed
+     * @param change The change
+     * @throws IOException          if the file can't be read or the report can't be written
+     * @throws IllegalDataException if the file isn't valid OSM data
+     */
+    void validate(File file, OsmChange change) throws IOException, IllegalDataException {
+        validate(file.getName(), () -> Compression.getUncompressedFileInputStream(file), change);
+    }
+
+    void validate(String name, RelationLoader.Source source, OsmChange change)
+            throws IOException, IllegalDataException {
+        final long start = System.nanoTime();
+        final Elements base = RelationLoader.read(source, change.getWays(), change.getNodes());
+        final DataSet before = RelationLoader.build(base, new HashMap<>());
+        final Map<Element, OsmPrimitive> primitives = new HashMap<>();
+        final DataSet after = RelationLoader.build(change.apply(base), primitives);
+
+        validate(name, before, change.getPrimitives(before), after, change.getPrimitives(primitives),
+                millis(start));
+    }
+
+    /**
+     * @param name          The name of the data sets in the report
+     * @param before        The data set before the change
+     * @param changedBefore The primitives of the data set before the change that were modified or deleted
+     * @param after         The data set after the change
+     * @param changedAfter  The primitives of the data set after the change that were created or modified
+     * @param loadMillis    The time it took to load the data sets
+     * @throws IOException if the report can't be written
+     */
+    void validate(String name, DataSet before, Collection<OsmPrimitive> changedBefore, DataSet after,
+            Collection<OsmPrimitive> changedAfter, long loadMillis) throws IOException {
+        final long start = System.nanoTime();
+        // the issues of a relation can only be compared if it's validated both before and after the change
+        final Set<Relation> oldRelations = Validator.getRelations(
+                concat(changedBefore, getRelations(before, Validator.getRelations(changedAfter))));
+        final Set<Relation> newRelations = Validator.getRelations(
+                concat(changedAfter, getRelations(after, oldRelations)));
+
+        final List<Finding> old = getFindings(before, oldRelations);
+        final List<Finding> current = getFindings(after, newRelations);
+        final long validateMillis = millis(start);
+
+        final List<Finding> introduced = subtract(current, old);
+        final List<Finding> resolved = subtract(old, current);
+        for (Finding f : introduced) {
+            writeIssue(name, "introduced", f);
+        }
+        for (Finding f : resolved) {
+            writeIssue(name, "resolved", f);
+        }
+
+        writeChangeSummary(name, newRelations.size(), introduced.size(), resolved.size(), loadMillis,
+                validateMillis);
+    }
+
+    /**
+     * @return The relations of the data set with the ids of the relations
+     */
+    private static List<OsmPrimitive> getRelations(DataSet dataSet, Collection<Relation> relations) {
+        final List<OsmPrimitive> result = new ArrayList<>(relations.size());
+        for (Relation r : relations) {
+            final OsmPrimitive p = r.isNew() ? null : dataSet.getPrimitiveById(r.getId(), OsmPrimitiveType.RELATION);
+            if (p != null) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    private static List<OsmPrimitive> concat(Collection<OsmPrimitive> a, Collection<OsmPrimitive> b) {
+        final List<OsmPrimitive> result = new ArrayList<>(a.size() + b.size());
+        result.addAll(a);
+        result.addAll(b);
+        return result;
+    }
+
+    private static List<Finding> getFindings(DataSet dataSet, Set<Relation> relations) {
+        final List<Finding> result = new ArrayList<>();
+        for (Issue i : new Validator(true).validate(dataSet, relations, NullProgressMonitor.INSTANCE, batch -> { })) {
+            result.add(Finding.of(i));
+        }
+
+        final ConnectivityRelationCheck check = new ConnectivityRelationCheck();
+        check.startTest(NullProgressMonitor.INSTANCE);
+        for (Relation r : relations) {
+            final Finding malformed = visit(check, r);
+            if (malformed != null) {
+                result.add(malformed);
+            }
+        }
+        check.endTest();
+        for (TestError e : check.getErrors()) {
+            result.add(Finding.of(e));
+        }
+
+        return result;
+    }
+
+    /**
+     * Check a relation, a malformed tag is reported as a finding of the relation instead of aborting the report
+     *
+     * @return The finding of a malformed relation, {@code null} if it was checked
+     */
+    private static Finding visit(ConnectivityRelationCheck check, Relation r) {
+        try {
+            check.visit(r);
+            return null;
+        } catch (UnexpectedDataException e) {
+            return Finding.of(r, e);
+        }
+    }
+
+    /**
+     * @return The findings that aren't in the others, each of the others matches one finding
+     */
+    private static List<Finding> subtract(List<Finding> findings, List<Finding> others) {
+        final Map<Finding, Integer> counts = new HashMap<>();
+        for (Finding f : others) {
+            counts.merge(f, 1, Integer::sum);
+        }
+
+        final List<Finding> result = new ArrayList<>();
+        for (Finding f : findings) {
+            final Integer count = counts.get(f);
+            if (count == null || count == 0) {
+                result.add(f);
+            } else {
+                counts.put(f, count - 1);
+            }
+        }
+        return result;
+    }
+
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * @param status {@code true} if the issues have a status, whether they were introduced or resolved by a change
+     */
+    private void writeHeader(boolean status) throws IOException {
+        if (format == Format.CSV) {
+            out.write(status ? "file,status,source,code,severity,relation,primitives,message\n"
+                    : "file,source,code,severity,relation,primitives,message\n");
+        }
+    }
+
+    /**
+     * @param name    The name of the data set
+     * @param status  Whether the issue was introduced or resolved by a change, {@code null} without a change
+     * @param finding The issue
+     */
+    private void writeIssue(String name, String status, Finding finding) throws IOException {
+        ++issues;
+
+        final StringBuilder ids = new StringBuilder();
+        for (String id : finding.primitives) {
+            if (ids.length() > 0) {
+                ids.append(format == Format.CSV ? " " : ",");
+            }
+            ids.append(format == Format.CSV ? id : json(id));
+        }
+        final String relationId = finding.relation == null ? "" : Long.toString(finding.relation);
+
+        if (format == Format.CSV) {
+            out.write(csv(name) + ',' + (status == null ? "" : status + ',') + finding.source + ',' + finding.code
+                    + ',' + finding.severity + ',' + relationId + ',' + ids + ',' + csv(finding.message) + '\n');
+        } else {
+            out.write("{\"type\":\"issue\",\"file\":" + json(name)
+                    + (status == null ? "" : ",\"status\":" + json(status)) + ",\"source\":" + json(finding.source)
+                    + ",\"code\":" + json(finding.code) + ",\"severity\":" + json(finding.severity)
+                    + ",\"relation\":" + (finding.relation == null ? "null" : relationId) + ",\"primitives\":["
+                    + ids + "],\"message\":" + json(finding.message) + "}\n");
+        }
+    }
+
+    private void writeSummary(String name, int relations, int found, long loadMillis, long validateMillis,
+            long checkMillis) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvSummary(name, false, relations + " relations, " + found + " issues, load " + loadMillis
+                    + " ms, validate " + validateMillis + " ms, check " + checkMillis + " ms");
+        } else {
+            out.write("{\"type\":\"summary\",\"file\":" + json(name) + ",\"relations\":" + relations + ",\"issues\":"
+                    + found + ",\"loadMillis\":" + loadMillis + ",\"validateMillis\":" + validateMillis
+                    + ",\"checkMillis\":" + checkMillis + "}\n");
+        }
+    }
+
+    private void writeChangeSummary(String name, int relations, int introduced, int resolved, long loadMillis,
+            long validateMillis) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvSummary(name, true, relations + " relations affected, " + introduced + " issues introduced, "
+                    + resolved + " resolved, load " + loadMillis + " ms, validate " + validateMillis + " ms");
+        } else {
+            out.write("{\"type\":\"summary\",\"file\":" + json(name) + ",\"relations\":" + relations
+                    + ",\"introduced\":" + introduced + ",\"resolved\":" + resolved + ",\"loadMillis\":"
+                    + loadMillis + ",\"validateMillis\":" + validateMillis + "}\n");
+        }
+    }
+
+    /**
+     * @param name    The name of the data set
+     * @param status  {@code true} if the rows have a status column
+     * @param message The summary, in the message column
+     */
+    private void writeCsvSummary(String name, boolean status, String message) throws IOException {
+        out.write(csv(name) + (status ? ",," : ",") + "summary,,,,," + csv(message) + '\n');
+    }
+
+    static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        final StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c == '\n') {
+                result.append("\\n");
+            } else if (c < 0x20) {
+                result.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        } else if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
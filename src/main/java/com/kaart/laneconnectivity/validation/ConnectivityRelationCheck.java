@@ -3,13 +3,12 @@ package com.kaart.laneconnectivity.validation;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
@@ -20,6 +19,11 @@ import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+import com.kaart.laneconnectivity.model.ConnectivityIndex;
+import com.kaart.laneconnectivity.model.ConnectivityTag;
+import com.kaart.laneconnectivity.model.LaneProfile;
 
 /**
  * Check for inconsistencies in lane information between relation and members.
@@ -34,11 +38,18 @@ public class ConnectivityRelationCheck extends Test {
 
     protected static final int TOO_MANY_ROLES = INCONSISTENT_LANE_COUNT + 3;
 
+    protected static final int DUPLICATE_CONNECTIVITY = INCONSISTENT_LANE_COUNT + 4;
+
     private static final String CONNECTIVITY_TAG = "connectivity";
     private static final String VIA = "via";
     private static final String TO = "to";
     private static final String FROM = "from";
 
+    /**
+     * Relations already reported as duplicates, so that each group of duplicates is reported once
+     */
+    private final Set<Relation> duplicates = new HashSet<>();
+
     /**
     * Constructor
     */
@@ -46,39 +57,37 @@ public class ConnectivityRelationCheck extends Test {
         super(tr("Connectivity Relation Check"), tr("Checks that lane count of relation matches with lanes of members"));
     }
 
-    //Get lane count of members from the 'connectivity' tag
     /**
-     * Convert the connectivity tag into a map of values
-     *
-     * @param relation A relation with a {@code connectivity} tag.
-     * @return A Map in the form of {@code Map<Lane From, Map<Lane To, Optional>>}
+     * @param code The code of an error of this test
+     * @return The name of the code, for reports
      */
-    private static Map<Integer, Map<Integer, Boolean>> parseConnectivityTag(Relation relation) {
-        final String joined = relation.get(CONNECTIVITY_TAG);
-
-        if (joined == null) {
-            return new TreeMap<>();
+    static String getCodeName(int code) {
+        switch (code) {
+        case INCONSISTENT_LANE_COUNT:
+            return "INCONSISTENT_LANE_COUNT";
+        case UNKNOWN_CONNECTIVITY_ROLE:
+            return "UNKNOWN_CONNECTIVITY_ROLE";
+        case NO_CONNECTIVITY_TAG:
+            return "NO_CONNECTIVITY_TAG";
+        case TOO_MANY_ROLES:
+            return "TOO_MANY_ROLES";
+        case DUPLICATE_CONNECTIVITY:
+            return "DUPLICATE_CONNECTIVITY";
+        default:
+            return Integer.toString(code);
         }
+    }
 
-        final Map<Integer, Map<Integer, Boolean>> result = new HashMap<>();
-        String[] lanes = joined.split("\\|", -1);
-        for (int i = 0; i < lanes.length; i++) {
-            String[] lane = lanes[i].split(":", -1);
-            int laneNumber = Integer.parseInt(lane[0].trim());
-            Map<Integer, Boolean> connections = new HashMap<>();
-            String[] toLanes = Pattern.compile("\\p{Zs}*[,:;]\\p{Zs}*").split(lane[1]);
-            for (int j = 0; j < toLanes.length; j++) {
-                String toLane = toLanes[j].trim();
-                if (Pattern.compile("\\([0-9]+\\)").matcher(toLane).matches()) {
-                    toLane = toLane.replace("(", "").replace(")", "").trim();
-                    connections.put(Integer.parseInt(toLane), true);
-                } else {
-                    connections.put(Integer.parseInt(toLane), false);
-                }
-            }
-            result.put(laneNumber, connections);
-        }
-        return result;
+    @Override
+    public void startTest(ProgressMonitor progressMonitor) {
+        super.startTest(progressMonitor);
+        duplicates.clear();
+    }
+
+    @Override
+    public void endTest() {
+        duplicates.clear();
+        super.endTest();
     }
 
     @Override
@@ -89,34 +98,32 @@ public class ConnectivityRelationCheck extends Test {
                         .message(tr("No connectivity tag in connectivity relation")).primitives(r).build());
             } else if (!r.hasIncompleteMembers()) {
                 boolean badRole = checkForBadRole(r);
-                if (!badRole)
+                if (!badRole) {
                     checkForInconsistentLanes(r);
+                    checkForDuplicates(r);
+                }
             }
         }
     }
 
     private void checkForInconsistentLanes(Relation relation) {
         // Lane count from connectivity tag
-        Map<Integer, Map<Integer, Boolean>> connTagLanes = parseConnectivityTag(relation);
+        ConnectivityTag connTagLanes = ConnectivityTag.of(relation, CONNECTIVITY_TAG);
         // Lane count from member tags
         Map<String, Integer> roleLanes = new HashMap<>();
 
         for (RelationMember rM : relation.getMembers()) {
             // Check lanes
-            if (rM.getType() == OsmPrimitiveType.WAY) {
-                OsmPrimitive prim = rM.getMember();
-                if (prim.hasKey("lanes") && !rM.getRole().equals(VIA)) {
-                    roleLanes.put(rM.getRole(), Integer.parseInt(prim.get("lanes")));
+            if (rM.getType() == OsmPrimitiveType.WAY && !rM.getRole().equals(VIA)) {
+                LaneProfile profile = LaneProfile.of(rM.getWay());
+                if (profile.hasLanes()) {
+                    roleLanes.put(rM.getRole(), profile.getLanes());
                 }
             }
         }
-        boolean fromCheck = roleLanes.get(FROM) < Collections
-                .max(connTagLanes.entrySet(), Comparator.comparingInt(Map.Entry::getKey)).getKey();
-        boolean toCheck = false;
-        for (Entry<Integer, Map<Integer, Boolean>> to : connTagLanes.entrySet()) {
-            toCheck = roleLanes.get(TO) < Collections
-                    .max(to.getValue().entrySet(), Comparator.comparingInt(Map.Entry::getKey)).getKey();
-        }
+        // Members without (valid) lanes can't be inconsistent
+        boolean fromCheck = roleLanes.containsKey(FROM) && roleLanes.get(FROM) < connTagLanes.getMaxFrom();
+        boolean toCheck = roleLanes.containsKey(TO) && roleLanes.get(TO) < connTagLanes.getMaxTo();
         if (fromCheck || toCheck) {
             errors.add(TestError.builder(this, Severity.WARNING, INCONSISTENT_LANE_COUNT)
                     .message(tr("Inconsistent lane numbering between relation and members")).primitives(relation)
@@ -124,6 +131,23 @@ public class ConnectivityRelationCheck extends Test {
         }
     }
 
+    private void checkForDuplicates(Relation relation) {
+        if (duplicates.contains(relation)) {
+            return;
+        }
+
+        // Relations with the same from, via and to members, found with the index of the data set
+        final Set<Relation> others = ConnectivityIndex.of(relation.getDataSet()).getDuplicates(relation);
+        if (!others.isEmpty()) {
+            final List<Relation> group = new ArrayList<>(others.size() + 1);
+            group.add(relation);
+            group.addAll(others);
+            duplicates.addAll(group);
+            errors.add(TestError.builder(this, Severity.WARNING, DUPLICATE_CONNECTIVITY)
+                    .message(tr("Connectivity relations with the same members")).primitives(group).build());
+        }
+    }
+
     private boolean checkForBadRole(Relation relation) {
         // Check role names
         int viaWays = 0;
@@ -0,0 +1,92 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.validation.Severity;
+import org.openstreetmap.josm.data.validation.TestError;
+
+import com.kaart.laneconnectivity.model.Issue;
+import com.kaart.laneconnectivity.model.UnexpectedDataException;
+
+/**
+ * An issue of the {@link com.kaart.laneconnectivity.model.Validator} or an error of the
+ * {@link ConnectivityRelationCheck} as reported by the {@link BatchValidator}. Findings are equal if they are about
+ * the same primitives, so that the findings of two data sets of the same file can be compared.
+ */
+final class Finding {
+    final String source;
+    final String code;
+    final String severity;
+    /** The id of the relation, {@code null} if it isn't about a single relation */
+    final Long relation;
+    /** The type and id of each primitive, e.g. {@code w123} */
+    final List<String> primitives;
+    final String message;
+
+    private Finding(String source, String code, String severity, Relation relation,
+            Collection<? extends OsmPrimitive> primitives, String message) {
+        this.source = source;
+        this.code = code;
+        this.severity = severity;
+        this.relation = relation == null ? null : relation.getUniqueId();
+        this.primitives = new ArrayList<>(primitives.size());
+        for (OsmPrimitive p : primitives) {
+            this.primitives.add(p.getType().getAPIName().charAt(0) + Long.toString(p.getUniqueId()));
+        }
+        this.message = message;
+    }
+
+    static Finding of(Issue i) {
+        return new Finding("validator", "TURNLANES_" + i.getSeverity(), i.getSeverity().name(), i.getRelation(),
+                i.getPrimitives(), i.getDescription());
+    }
+
+    /**
+     * @param r The relation the check couldn't process
+     * @param e The reason
+     * @return An error of the relation, like the {@link com.kaart.laneconnectivity.model.Validator} reports for
+     *         unexpected data
+     */
+    static Finding of(Relation r, UnexpectedDataException e) {
+        return new Finding("check", "UNEXPECTED_DATA", Severity.ERROR.name(), r, Collections.singleton(r),
+                e.getMessage());
+    }
+
+    static Finding of(TestError e) {
+        Relation relation = null;
+        for (OsmPrimitive p : e.getPrimitives()) {
+            if (p instanceof Relation) {
+                relation = (Relation) p;
+                break;
+            }
+        }
+        return new Finding("check", ConnectivityRelationCheck.getCodeName(e.getCode()), e.getSeverity().name(),
+                relation, e.getPrimitives(), e.getMessage());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final Finding other = (Finding) obj;
+        return source.equals(other.source) && code.equals(other.code) && severity.equals(other.severity)
+                && Objects.equals(relation, other.relation) && primitives.equals(other.primitives)
+                && Objects.equals(message, other.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, code, severity, relation, primitives, message);
+    }
+}
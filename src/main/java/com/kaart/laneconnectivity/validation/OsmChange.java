@@ -0,0 +1,201 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.tools.XmlUtils;
+
+import com.kaart.laneconnectivity.validation.RelationLoader.Element;
+import com.kaart.laneconnectivity.validation.RelationLoader.Elements;
+import com.kaart.laneconnectivity.validation.RelationLoader.Member;
+
+/**
+ * An osmChange file, applied to the primitives read by the {@link RelationLoader}: created and modified primitives
+ * replace those of the base file, deleted primitives are removed from it.
+ */
+final class OsmChange {
+    private final Map<OsmPrimitiveType, Map<Long, Element>> changed = new EnumMap<>(OsmPrimitiveType.class);
+    private final Map<OsmPrimitiveType, Set<Long>> deleted = new EnumMap<>(OsmPrimitiveType.class);
+
+    private OsmChange() {
+        for (OsmPrimitiveType type : getTypes()) {
+            changed.put(type, new LinkedHashMap<>());
+            deleted.put(type, new HashSet<>());
+        }
+    }
+
+    private static OsmPrimitiveType[] getTypes() {
+        return new OsmPrimitiveType[] {OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION};
+    }
+
+    /**
+     * @param file The osmChange file, may be compressed
+     * @return The change
+     * @throws IOException          if the file can't be read
+     * @throws IllegalDataException if the file isn't a valid osmChange
+     */
+    static OsmChange read(File file) throws IOException, IllegalDataException {
+        return read(() -> Compression.getUncompressedFileInputStream(file));
+    }
+
+    static OsmChange read(RelationLoader.Source source) throws IOException, IllegalDataException {
+        final OsmChange change = new OsmChange();
+        try (InputStream in = source.open()) {
+            final XMLStreamReader reader = XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(in);
+            try {
+                String action = null;
+                Element current = null;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("create".equals(name) || "modify".equals(name) || "delete".equals(name)) {
+                            action = name;
+                        } else if (action != null && current == null
+                                && ("node".equals(name) || "way".equals(name) || "relation".equals(name))) {
+                            current = RelationLoader.readElement(reader, name, !"delete".equals(action));
+                        } else if (current != null) {
+                            RelationLoader.read(reader, name, current);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if (current != null && ("node".equals(name) || "way".equals(name)
+                                || "relation".equals(name))) {
+                            change.put(action, OsmPrimitiveType.fromApiTypeName(name), current);
+                            current = null;
+                        } else if (name.equals(action)) {
+                            action = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IllegalDataException(e);
+        }
+        return change;
+    }
+
+    private void put(String action, OsmPrimitiveType type, Element e) {
+        // a later action on the same primitive replaces an earlier one
+        if ("delete".equals(action)) {
+            changed.get(type).remove(e.id);
+            deleted.get(type).add(e.id);
+        } else {
+            deleted.get(type).remove(e.id);
+            changed.get(type).put(e.id, e);
+        }
+    }
+
+    /**
+     * @return The ids of the ways needed from the base file: the way members of changed relations
+     */
+    Set<Long> getWays() {
+        final Set<Long> result = new HashSet<>();
+        for (Element e : changed.get(OsmPrimitiveType.RELATION).values()) {
+            for (Member m : e.members) {
+                if ("way".equals(m.type)) {
+                    result.add(m.ref);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The ids of the nodes needed from the base file: the nodes of changed ways and the node members of
+     *         changed relations
+     */
+    Set<Long> getNodes() {
+        final Set<Long> result = new HashSet<>();
+        for (Element e : changed.get(OsmPrimitiveType.WAY).values()) {
+            result.addAll(e.nodes);
+        }
+        for (Element e : changed.get(OsmPrimitiveType.RELATION).values()) {
+            for (Member m : e.members) {
+                if ("node".equals(m.type)) {
+                    result.add(m.ref);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param base The primitives of the base file
+     * @return The primitives after the change
+     */
+    Elements apply(Elements base) {
+        return new Elements(apply(base.nodes, OsmPrimitiveType.NODE), apply(base.ways, OsmPrimitiveType.WAY),
+                apply(base.relations, OsmPrimitiveType.RELATION));
+    }
+
+    private List<Element> apply(List<Element> base, OsmPrimitiveType type) {
+        final Map<Long, Element> replaced = changed.get(type);
+        final Set<Long> removed = deleted.get(type);
+
+        final List<Element> result = new ArrayList<>(base.size() + replaced.size());
+        for (Element e : base) {
+            if (!replaced.containsKey(e.id) && !removed.contains(e.id)) {
+                result.add(e);
+            }
+        }
+        result.addAll(replaced.values());
+        return result;
+    }
+
+    /**
+     * @param dataSet The data set of the base file
+     * @return The primitives of the data set that are modified or deleted by the change
+     */
+    List<OsmPrimitive> getPrimitives(DataSet dataSet) {
+        final List<OsmPrimitive> result = new ArrayList<>();
+        for (OsmPrimitiveType type : getTypes()) {
+            final Set<Long> ids = new HashSet<>(changed.get(type).keySet());
+            ids.addAll(deleted.get(type));
+            for (long id : ids) {
+                final OsmPrimitive p = id > 0 ? dataSet.getPrimitiveById(id, type) : null;
+                if (p != null) {
+                    result.add(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param primitives The primitives built for the elements after the change
+     * @return The primitives that are created or modified by the change
+     */
+    List<OsmPrimitive> getPrimitives(Map<Element, OsmPrimitive> primitives) {
+        final List<OsmPrimitive> result = new ArrayList<>();
+        for (OsmPrimitiveType type : getTypes()) {
+            for (Element e : changed.get(type).values()) {
+                final OsmPrimitive p = primitives.get(e);
+                if (p != null) {
+                    result.add(p);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,361 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.tools.XmlUtils;
+
+/**
+ * Loads only what the validation needs from an OSM XML file: the connectivity and lengths relations, their member
+ * ways and the nodes of those ways.
+ * <p>
+ * The file is streamed once per kind of primitive, relations first since they decide which ways are needed, then
+ * ways, which decide which nodes are needed, then nodes. The scans of ways and nodes stop at the first element after
+ * them. Members that aren't in the file, or ways with nodes that aren't, are loaded as incomplete primitives.
+ */
+public final class RelationLoader {
+    private static final String TYPE_CONNECTIVITY = "connectivity";
+    private static final String TYPE_LENGTHS = "turnlanes:lengths";
+
+    /**
+     * Opens the file for each pass
+     */
+    @FunctionalInterface
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
+    static final class Member {
+        final String type;
+        final long ref;
+        final String role;
+
+        Member(String type, long ref, String role) {
+            this.type = type;
+            this.ref = ref;
+            this.role = role;
+        }
+    }
+
+    /**
+     * A primitive as read from the file
+     */
+    static final class Element {
+        final long id;
+        final int version;
+        final Map<String, String> tags = new HashMap<>(4);
+        final List<Member> members = new ArrayList<>(3);
+        final List<Long> nodes = new ArrayList<>();
+        double lat;
+        double lon;
+
+        Element(long id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The primitives read from a file
+     */
+    static final class Elements {
+        final List<Element> nodes;
+        final List<Element> ways;
+        final List<Element> relations;
+
+        Elements(List<Element> nodes, List<Element> ways, List<Element> relations) {
+            this.nodes = nodes;
+            this.ways = ways;
+            this.relations = relations;
+        }
+    }
+
+    private RelationLoader() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * @param file The OSM file, may be compressed
+     * @return The relations to validate, with their members
+     * @throws IOException          if the file can't be read
+     * @throws IllegalDataException if the file isn't valid OSM data
+     */
+    public static DataSet load(File file) throws IOException, IllegalDataException {
+        return load(() -> Compression.getUncompressedFileInputStream(file));
+    }
+
+    static DataSet load(Source source) throws IOException, IllegalDataException {
+        return build(read(source, Collections.<Long>emptySet(), Collections.<Long>emptySet()), new HashMap<>());
+    }
+
+    /**
+     * @param source The file
+     * @param ways   The ids of ways to read as well, e.g. the members of changed relations
+     * @param nodes  The ids of nodes to read as well, e.g. the nodes of changed ways
+     * @return The relations to validate, their members and the requested primitives
+     * @throws IOException          if the file can't be read
+     * @throws IllegalDataException if the file isn't valid OSM data
+     */
+    static Elements read(Source source, Collection<Long> ways, Collection<Long> nodes)
+            throws IOException, IllegalDataException {
+        final List<Element> relationElements = new ArrayList<>();
+        final Set<Long> wayIds = new HashSet<>(ways);
+        final Set<Long> nodeIds = new HashSet<>(nodes);
+        scan(source, "relation", null, e -> {
+            final String type = e.tags.get("type");
+            if (TYPE_CONNECTIVITY.equals(type) || TYPE_LENGTHS.equals(type)) {
+                relationElements.add(e);
+                for (Member m : e.members) {
+                    if ("way".equals(m.type)) {
+                        wayIds.add(m.ref);
+                    } else if ("node".equals(m.type)) {
+                        nodeIds.add(m.ref);
+                    }
+                }
+            }
+        });
+
+        final List<Element> wayElements = new ArrayList<>(wayIds.size());
+        if (!wayIds.isEmpty()) {
+            scan(source, "way", "relation", e -> {
+                if (wayIds.contains(e.id)) {
+                    wayElements.add(e);
+                    nodeIds.addAll(e.nodes);
+                }
+            });
+        }
+
+        final List<Element> nodeElements = new ArrayList<>(nodeIds.size());
+        if (!nodeIds.isEmpty()) {
+            scan(source, "node", "way", e -> {
+                if (nodeIds.contains(e.id)) {
+                    nodeElements.add(e);
+                }
+            });
+        }
+
+        return new Elements(nodeElements, wayElements, relationElements);
+    }
+
+    @FunctionalInterface
+    private interface ElementHandler {
+        void handle(Element e);
+    }
+
+    /**
+     * Stream the elements of one kind
+     *
+     * @param source  The file
+     * @param kind    The kind of elements to read
+     * @param stop    The kind of the elements after them, {@code null} to read the whole file
+     * @param handler Receives the elements
+     */
+    private static void scan(Source source, String kind, String stop, ElementHandler handler)
+            throws IOException, IllegalDataException {
+        try (InputStream in = source.open()) {
+            final XMLStreamReader reader = XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(in);
+            try {
+                Element current = null;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if (name.equals(stop)) {
+                            return;
+                        } else if (name.equals(kind)) {
+                            current = readElement(reader, kind, true);
+                        } else if (current != null) {
+                            read(reader, name, current);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && current != null
+                            && reader.getLocalName().equals(kind)) {
+                        handler.handle(current);
+                        current = null;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IllegalDataException(e);
+        }
+    }
+
+    /**
+     * @param reader      The reader, at the start of the element
+     * @param kind        The kind of the element
+     * @param coordinates {@code true} if nodes must have coordinates, they don't in deletions
+     * @return The element, without its tags, nodes and members
+     * @throws IllegalDataException if an attribute is missing
+     */
+    static Element readElement(XMLStreamReader reader, String kind, boolean coordinates) throws IllegalDataException {
+        final Element e = new Element(Long.parseLong(getAttribute(reader, "id")),
+                parseVersion(reader.getAttributeValue(null, "version")));
+        if (coordinates && "node".equals(kind)) {
+            e.lat = Double.parseDouble(getAttribute(reader, "lat"));
+            e.lon = Double.parseDouble(getAttribute(reader, "lon"));
+        }
+        return e;
+    }
+
+    /**
+     * Read a child of an element, i.e. a tag, node or member
+     *
+     * @param reader The reader, at the start of the child
+     * @param name   The name of the child
+     * @param e      The element
+     * @throws IllegalDataException if an attribute is missing
+     */
+    static void read(XMLStreamReader reader, String name, Element e) throws IllegalDataException {
+        switch (name) {
+        case "tag":
+            e.tags.put(getAttribute(reader, "k"), getAttribute(reader, "v"));
+            break;
+        case "nd":
+            e.nodes.add(Long.parseLong(getAttribute(reader, "ref")));
+            break;
+        case "member":
+            e.members.add(new Member(getAttribute(reader, "type"), Long.parseLong(getAttribute(reader, "ref")),
+                    reader.getAttributeValue(null, "role")));
+            break;
+        default:
+            // not needed for the validation
+        }
+    }
+
+    static String getAttribute(XMLStreamReader reader, String name) throws IllegalDataException {
+        final String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IllegalDataException(tr("Missing required attribute ''{0}''.", name));
+        }
+        return value;
+    }
+
+    private static int parseVersion(String version) {
+        return version == null ? 1 : Math.max(1, Integer.parseInt(version));
+    }
+
+    /**
+     * @param elements   The primitives
+     * @param primitives Receives the primitive built for each element
+     * @return A data set of the primitives, with incomplete primitives for members that aren't in it
+     */
+    static DataSet build(Elements elements, Map<Element, OsmPrimitive> primitives) {
+        final List<Element> nodeElements = elements.nodes;
+        final List<Element> wayElements = elements.ways;
+        final List<Element> relationElements = elements.relations;
+        final DataSet dataSet = new DataSet();
+
+        final Map<Long, Node> nodes = new HashMap<>(nodeElements.size());
+        for (Element e : nodeElements) {
+            final Node n = e.id > 0 ? new Node(e.id, e.version) : new Node();
+            n.setCoor(new LatLon(e.lat, e.lon));
+            nodes.put(e.id, n);
+            primitives.put(e, n);
+            dataSet.addPrimitive(n);
+        }
+
+        final Map<Long, Way> ways = new HashMap<>(wayElements.size());
+        for (Element e : wayElements) {
+            final List<Node> wayNodes = new ArrayList<>(e.nodes.size());
+            for (Long id : e.nodes) {
+                final Node n = nodes.get(id);
+                if (n != null) {
+                    wayNodes.add(n);
+                }
+            }
+
+            final Way w;
+            if (wayNodes.size() == e.nodes.size()) {
+                w = e.id > 0 ? new Way(e.id, e.version) : new Way();
+                w.setNodes(wayNodes);
+                w.setKeys(e.tags);
+            } else if (e.id > 0) {
+                // cut off by the extract, like ways that aren't in it at all
+                w = new Way(e.id);
+            } else {
+                continue;
+            }
+            ways.put(e.id, w);
+            primitives.put(e, w);
+            dataSet.addPrimitive(w);
+        }
+
+        final Map<Long, Relation> relations = new HashMap<>(relationElements.size());
+        final List<Relation> loaded = new ArrayList<>(relationElements.size());
+        for (Element e : relationElements) {
+            final Relation r = e.id > 0 ? new Relation(e.id, e.version) : new Relation();
+            r.setKeys(e.tags);
+            relations.put(e.id, r);
+            primitives.put(e, r);
+            loaded.add(r);
+            dataSet.addPrimitive(r);
+        }
+
+        for (int i = 0; i < loaded.size(); i++) {
+            final Element e = relationElements.get(i);
+            final List<RelationMember> members = new ArrayList<>(e.members.size());
+            for (Member m : e.members) {
+                final OsmPrimitive p = getMember(dataSet, nodes, ways, relations, m);
+                if (p != null) {
+                    members.add(new RelationMember(m.role == null ? "" : m.role, p));
+                }
+            }
+            loaded.get(i).setMembers(members);
+        }
+
+        return dataSet;
+    }
+
+    /**
+     * @return The member, an incomplete primitive if it wasn't loaded, {@code null} for a missing new primitive
+     */
+    private static OsmPrimitive getMember(DataSet dataSet, Map<Long, Node> nodes, Map<Long, Way> ways,
+            Map<Long, Relation> relations, Member m) {
+        if ("node".equals(m.type)) {
+            return getMember(dataSet, nodes, m.ref, Node::new);
+        } else if ("way".equals(m.type)) {
+            return getMember(dataSet, ways, m.ref, Way::new);
+        } else {
+            // other relations aren't needed, only their existence as members
+            return getMember(dataSet, relations, m.ref, Relation::new);
+        }
+    }
+
+    private static <T extends OsmPrimitive> T getMember(DataSet dataSet, Map<Long, T> loaded, long ref,
+            LongFunction<T> incomplete) {
+        T p = loaded.get(ref);
+        if (p == null && ref > 0) {
+            p = incomplete.apply(ref);
+            loaded.put(ref, p);
+            dataSet.addPrimitive(p);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,63 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Benchmarks for the {@link Distance} engines. The data is a line of nodes a few metres apart, as found in the ways of
+ * a junction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    private static final int NODES = 1000;
+
+    @Param({"EXACT", "FAST"})
+    public String mode;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private Distance distance;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        distance = Distance.valueOf(mode);
+
+        final Random random = new Random(NODES);
+        double lat = 52;
+        double lon = 13;
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(new Node(new LatLon(lat, lon)));
+            lat += random.nextDouble() * 0.0001;
+            lon += random.nextDouble() * 0.0001;
+        }
+    }
+
+    @Benchmark
+    public double length() {
+        return distance.near(nodes.get(0).getCoor()).length(nodes);
+    }
+}
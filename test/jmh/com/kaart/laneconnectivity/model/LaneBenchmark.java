@@ -0,0 +1,69 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Relation;
+
+/**
+ * Benchmarks for {@link Lane#loadLengths(Relation, String, double)}. There are more lengths relations than the
+ * {@link ParsedTagCache} holds, so that the uncached benchmark parses the tag every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LaneBenchmark {
+    @Param({"1", "4"})
+    public int lanes;
+
+    /** Only relations in a data set are cached */
+    private final DataSet dataSet = new DataSet();
+    private final List<Relation> relations = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        final StringBuilder lengths = new StringBuilder();
+        for (int i = 1; i <= lanes; i++) {
+            lengths.append(i == 1 ? "" : ";").append(i * 25.5);
+        }
+
+        for (int i = 0; i < 2 * ParsedTagCache.MAX_RELATIONS; i++) {
+            final Relation r = TestUtils.newRelation("type=turnlanes:lengths lengths:left=" + lengths);
+            dataSet.addPrimitive(r);
+            relations.add(r);
+        }
+    }
+
+    @Benchmark
+    public List<Double> loadLengths() {
+        return Lane.loadLengths(relations.get(0), Constants.LENGTHS_KEY_LENGTHS_LEFT, 20);
+    }
+
+    @Benchmark
+    public List<Double> loadLengthsUncached() {
+        next = (next + 1) % relations.size();
+        return Lane.loadLengths(relations.get(next), Constants.LENGTHS_KEY_LENGTHS_LEFT, 20);
+    }
+}
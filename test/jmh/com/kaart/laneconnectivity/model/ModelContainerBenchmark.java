@@ -0,0 +1,86 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+/**
+ * Benchmarks for {@link ModelContainer#close(Set, Set)}. The data is a corridor of junctions where every junction is
+ * connected to the next one by a connectivity relation with a via way, so selecting the first junction closes over
+ * the whole corridor. The time per junction should stay constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelContainerBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int junctions;
+
+    private Node start;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i <= junctions + 1; i++) {
+            nodes.add(new Node(new LatLon(0, i * 0.001)));
+        }
+
+        final List<Way> ways = new ArrayList<>();
+        for (int i = 0; i <= junctions; i++) {
+            ways.add(TestUtils.newWay("highway=primary lanes=2", nodes.get(i), nodes.get(i + 1)));
+        }
+
+        final DataSet dataSet = new DataSet();
+        for (int i = 1; i < ways.size() - 1; i++) {
+            final Relation r = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                    new RelationMember(Constants.ROLE_FROM, ways.get(i - 1)),
+                    new RelationMember(Constants.ROLE_VIA, ways.get(i)),
+                    new RelationMember(Constants.ROLE_TO, ways.get(i + 1)));
+            TestUtilsCustom.addPrimitivesToDataSet(dataSet, r);
+        }
+
+        start = nodes.get(1);
+    }
+
+    @Benchmark
+    public Set<Node> close() {
+        final Set<Node> closedNodes = new HashSet<>(Collections.singleton(start));
+        ModelContainer.close(closedNodes, new HashSet<>());
+
+        if (closedNodes.size() != junctions) {
+            throw new IllegalStateException("Unexpected closure: " + closedNodes.size());
+        }
+        return closedNodes;
+    }
+}
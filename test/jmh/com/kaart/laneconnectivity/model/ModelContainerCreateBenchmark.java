@@ -0,0 +1,56 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.NetworkGenerator;
+
+/**
+ * Benchmarks for {@link ModelContainer#create(Iterable, Iterable)}, i.e. building the model of a selection of
+ * junctions as the junction pane does. The selection is the first junctions of a generated network twice as large.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelContainerCreateBenchmark {
+    @Param({"1", "10", "100"})
+    public int junctions;
+
+    @Param({"CORRIDOR", "GRID", "DUAL_CARRIAGEWAYS"})
+    public String layout;
+
+    private List<Node> selection;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        selection = new NetworkGenerator(junctions).withExtraLanes(0.2)
+                .generate(NetworkGenerator.Layout.valueOf(layout), 2 * junctions).getJunctions().subList(0, junctions);
+    }
+
+    @Benchmark
+    public ModelContainer create() {
+        return ModelContainer.create(selection, Collections.<Way>emptyList());
+    }
+}
@@ -0,0 +1,89 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Relation;
+
+/**
+ * Benchmarks for {@link Turn#indices(Relation, String)} and {@link Turn#join(Map)}. The connectivity connects every
+ * lane straight on, and optionally to the next lane. There are more relations than the {@link ParsedTagCache} holds,
+ * so that the uncached benchmark parses the tag every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnBenchmark {
+    @Param({"2", "8"})
+    public int lanes;
+
+    /** Only relations in a data set are cached */
+    private final DataSet dataSet = new DataSet();
+    private final List<Relation> relations = new ArrayList<>();
+    private int next;
+    private Map<Integer, Map<Integer, Boolean>> connectivity;
+    private List<Integer> list;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        final StringBuilder value = new StringBuilder();
+        list = new ArrayList<>(lanes);
+        for (int i = 1; i <= lanes; i++) {
+            value.append(i == 1 ? "" : "|").append(i).append(':').append(i);
+            if (i < lanes) {
+                value.append(",(").append(i + 1).append(')');
+            }
+            list.add(i);
+        }
+
+        for (int i = 0; i < 2 * ParsedTagCache.MAX_RELATIONS; i++) {
+            final Relation r = TestUtils.newRelation("type=connectivity connectivity=" + value);
+            dataSet.addPrimitive(r);
+            relations.add(r);
+        }
+        connectivity = Turn.indices(relations.get(0), "connectivity");
+    }
+
+    @Benchmark
+    public Map<Integer, Map<Integer, Boolean>> indices() {
+        return Turn.indices(relations.get(0), "connectivity");
+    }
+
+    @Benchmark
+    public Map<Integer, Map<Integer, Boolean>> indicesUncached() {
+        next = (next + 1) % relations.size();
+        return Turn.indices(relations.get(next), "connectivity");
+    }
+
+    @Benchmark
+    public String join() {
+        return Turn.join(connectivity);
+    }
+
+    @Benchmark
+    public String joinList() {
+        return Turn.join(list);
+    }
+}
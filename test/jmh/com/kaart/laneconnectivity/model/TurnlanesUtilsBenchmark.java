@@ -0,0 +1,72 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Benchmarks for {@link TurnlanesUtils#orderWays(Iterable, Iterable)}. The data is a corridor of junctions where
+ * consecutive junctions are connected by three ways, given in random order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnlanesUtilsBenchmark {
+    private static final int WAYS_PER_ROAD = 3;
+
+    @Param({"10", "100", "1000", "5000"})
+    public int junctions;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Way> ways = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        Node previous = null;
+        for (int i = 0; i < junctions * WAYS_PER_ROAD; i++) {
+            final Node n = new Node(new LatLon(0, i * 0.001));
+            if (i % WAYS_PER_ROAD == 0) {
+                nodes.add(n);
+            }
+            if (previous != null) {
+                ways.add(TestUtils.newWay("highway=primary", previous, n));
+            }
+            previous = n;
+        }
+        // the last junction
+        ways.remove(ways.size() - 1);
+        ways.remove(ways.size() - 1);
+
+        Collections.shuffle(ways, new Random(junctions));
+    }
+
+    @Benchmark
+    public List<Route> orderWays() {
+        return TurnlanesUtils.orderWays(ways, nodes);
+    }
+}
@@ -0,0 +1,59 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+
+import com.kaart.laneconnectivity.NetworkGenerator;
+
+/**
+ * Benchmarks for {@link Validator#validate(DataSet)}, sequential and parallel. The networks have extra lanes and a few
+ * broken relations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int junctions;
+
+    @Param({"GRID", "DUAL_CARRIAGEWAYS"})
+    public String layout;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private DataSet dataSet;
+    private Validator validator;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        dataSet = new NetworkGenerator(junctions).withExtraLanes(0.2).withBroken(0.05)
+                .generate(NetworkGenerator.Layout.valueOf(layout), junctions).getDataSet();
+        validator = new Validator(parallel);
+    }
+
+    @Benchmark
+    public List<Issue> validate() {
+        return validator.validate(dataSet);
+    }
+}
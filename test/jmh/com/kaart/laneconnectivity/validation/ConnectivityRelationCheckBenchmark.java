@@ -0,0 +1,63 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+import com.kaart.laneconnectivity.NetworkGenerator;
+import com.kaart.laneconnectivity.model.ConnectivityIndex;
+
+/**
+ * Benchmarks for {@link ConnectivityRelationCheck#visit(Relation)}: a run of the check over all connectivity
+ * relations of a generated network, as the JOSM validator does. The networks have a few broken relations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectivityRelationCheckBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int junctions;
+
+    @Param({"GRID", "DUAL_CARRIAGEWAYS"})
+    public String layout;
+
+    private List<Relation> relations;
+
+    @Setup
+    public void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+
+        relations = ConnectivityIndex.of(new NetworkGenerator(junctions).withBroken(0.05)
+                .generate(NetworkGenerator.Layout.valueOf(layout), junctions).getDataSet()).getConnectivityRelations();
+    }
+
+    @Benchmark
+    public List<TestError> visit() {
+        final ConnectivityRelationCheck check = new ConnectivityRelationCheck();
+        check.startTest(NullProgressMonitor.INSTANCE);
+        for (Relation r : relations) {
+            check.visit(r);
+        }
+        check.endTest();
+        return check.getErrors();
+    }
+}
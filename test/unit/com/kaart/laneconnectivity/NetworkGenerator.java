@@ -0,0 +1,403 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Generates road networks with connectivity and lengths relations for tests and benchmarks, from a seed, so that the
+ * same seed always yields the same network. Traffic drives on the right.
+ * <p>
+ * Each approach to a junction gets an extra right lane, i.e. a lengths relation, with the probability
+ * {@link #withExtraLanes(double) extraLanes}. Each relation is broken with the probability
+ * {@link #withBroken(double) broken}, so that the {@link com.kaart.laneconnectivity.model.Validator} or the
+ * {@link com.kaart.laneconnectivity.validation.ConnectivityRelationCheck} report it.
+ */
+public final class NetworkGenerator {
+    /** The distance between junctions, in degrees (about 100 m) */
+    private static final double SPACING = 0.001;
+
+    /**
+     * The layouts of the networks
+     */
+    public enum Layout {
+        /** A grid of two-way streets, which go straight on and turn right at every junction */
+        GRID,
+        /** Junctions on a oneway main road, each with a two-way side road */
+        CORRIDOR,
+        /** Roundabouts with four two-way arms, every node of a roundabout is a junction */
+        ROUNDABOUTS,
+        /**
+         * Two-way streets crossing a dual carriageway, with turns through the median way. Every street has a
+         * junction with each carriageway.
+         */
+        DUAL_CARRIAGEWAYS
+    }
+
+    /**
+     * A generated network
+     */
+    public static final class Network {
+        private final DataSet dataSet;
+        private final List<Node> junctions;
+        private final Set<Relation> broken;
+
+        Network(DataSet dataSet, List<Node> junctions, Set<Relation> broken) {
+            this.dataSet = dataSet;
+            this.junctions = Collections.unmodifiableList(junctions);
+            this.broken = Collections.unmodifiableSet(broken);
+        }
+
+        public DataSet getDataSet() {
+            return dataSet;
+        }
+
+        /**
+         * @return The nodes of the junctions, in the order they were generated
+         */
+        public List<Node> getJunctions() {
+            return junctions;
+        }
+
+        /**
+         * @return The relations that were broken on purpose
+         */
+        public Set<Relation> getBroken() {
+            return broken;
+        }
+    }
+
+    private final long seed;
+    private double extraLanes;
+    private double broken;
+
+    private Random random;
+    private DataSet dataSet;
+    private Set<Relation> brokenRelations;
+    private Set<List<Long>> approaches;
+
+    /**
+     * @param seed The seed of the networks
+     */
+    public NetworkGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param fraction The probability of an extra right lane on each approach to a junction
+     * @return This generator
+     */
+    public NetworkGenerator withExtraLanes(double fraction) {
+        this.extraLanes = fraction;
+        return this;
+    }
+
+    /**
+     * @param fraction The probability of each relation to be broken
+     * @return This generator
+     */
+    public NetworkGenerator withBroken(double fraction) {
+        this.broken = fraction;
+        return this;
+    }
+
+    /**
+     * @param layout    The layout of the network
+     * @param junctions The number of junctions, of roundabouts, or of streets crossing the dual carriageway
+     * @return A new network in a new data set
+     */
+    public Network generate(Layout layout, int junctions) {
+        random = new Random(seed);
+        dataSet = new DataSet();
+        brokenRelations = new LinkedHashSet<>();
+        approaches = new HashSet<>();
+
+        final List<Node> nodes;
+        switch (layout) {
+        case GRID:
+            nodes = grid(junctions);
+            break;
+        case CORRIDOR:
+            nodes = corridor(junctions);
+            break;
+        case ROUNDABOUTS:
+            nodes = roundabouts(junctions);
+            break;
+        case DUAL_CARRIAGEWAYS:
+            nodes = dualCarriageways(junctions);
+            break;
+        default:
+            throw new IllegalArgumentException(String.valueOf(layout));
+        }
+
+        return new Network(dataSet, nodes, brokenRelations);
+    }
+
+    private List<Node> grid(int junctions) {
+        final int columns = (int) Math.ceil(Math.sqrt(junctions));
+        final int rows = columns == 0 ? 0 : (junctions + columns - 1) / columns;
+
+        final Node[][] nodes = new Node[rows][columns];
+        final List<Node> result = new ArrayList<>(junctions);
+        for (int i = 0; i < junctions; i++) {
+            nodes[i / columns][i % columns] = node(i / columns * SPACING, i % columns * SPACING);
+            result.add(nodes[i / columns][i % columns]);
+        }
+
+        // the ways leaving each node to the north, east, south and west
+        final int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        final Way[][][] ways = new Way[rows][columns][4];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                for (int d = 0; d < 2; d++) {
+                    final Node other = get(nodes, r + directions[d][0], c + directions[d][1]);
+                    if (nodes[r][c] != null && other != null) {
+                        final Way w = way("highway=residential lanes=2", nodes[r][c], other);
+                        ways[r][c][d] = w;
+                        ways[r + directions[d][0]][c + directions[d][1]][d + 2] = w;
+                    }
+                }
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                for (int d = 0; d < 4; d++) {
+                    // coming from the neighbour in direction d, straight on leaves towards d + 2, right towards d + 3
+                    final Way from = ways[r][c][d];
+                    if (from != null) {
+                        connect(from, nodes[r][c], ways[r][c][(d + 2) % 4], "1:1");
+                        connect(from, nodes[r][c], ways[r][c][(d + 3) % 4], "1:1");
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static Node get(Node[][] nodes, int r, int c) {
+        return r >= 0 && r < nodes.length && c >= 0 && c < nodes[r].length ? nodes[r][c] : null;
+    }
+
+    private List<Node> corridor(int junctions) {
+        final int lanes = 2 + random.nextInt(2);
+
+        final List<Node> nodes = new ArrayList<>(junctions + 2);
+        for (int i = 0; i <= junctions + 1; i++) {
+            nodes.add(node(0, i * SPACING));
+        }
+
+        final List<Way> ways = new ArrayList<>(junctions + 1);
+        for (int i = 0; i <= junctions; i++) {
+            ways.add(way("highway=primary oneway=yes lanes=" + lanes, nodes.get(i), nodes.get(i + 1)));
+        }
+
+        for (int i = 1; i <= junctions; i++) {
+            final Node junction = nodes.get(i);
+            final Way side = way("highway=secondary lanes=2", junction, node(SPACING / 2, i * SPACING));
+            connect(ways.get(i - 1), junction, ways.get(i), straight(lanes, lanes));
+            connect(ways.get(i - 1), junction, side, "1:1");
+            connect(side, junction, ways.get(i), "1:1");
+        }
+
+        return nodes.subList(1, junctions + 1);
+    }
+
+    private List<Node> roundabouts(int roundabouts) {
+        final double radius = SPACING / 4;
+        final List<Node> result = new ArrayList<>(4 * roundabouts);
+
+        for (int i = 0; i < roundabouts; i++) {
+            final double lon = i * 3 * SPACING;
+            // counterclockwise, starting in the east
+            final Node[] ring = {node(0, lon + radius), node(radius, lon), node(0, lon - radius), node(-radius, lon)};
+            final Way[] ringWays = new Way[4];
+            final Way[] arms = new Way[4];
+            for (int j = 0; j < 4; j++) {
+                ringWays[j] = way("highway=primary junction=roundabout oneway=yes lanes=1", ring[j],
+                        ring[(j + 1) % 4]);
+                final double lat = j == 1 ? SPACING : j == 3 ? -SPACING : 0;
+                final double armLon = j == 0 ? lon + SPACING : j == 2 ? lon - SPACING : lon;
+                arms[j] = way("highway=secondary lanes=2", ring[j], node(lat, armLon));
+            }
+
+            for (int j = 0; j < 4; j++) {
+                final Way in = ringWays[(j + 3) % 4];
+                final Way out = ringWays[j];
+                connect(arms[j], ring[j], out, "1:1");
+                connect(in, ring[j], out, "1:1");
+                connect(in, ring[j], arms[j], "1:1");
+            }
+
+            result.addAll(Arrays.asList(ring));
+        }
+
+        return result;
+    }
+
+    private List<Node> dualCarriageways(int streets) {
+        final int lanes = 2 + random.nextInt(2);
+        final double median = SPACING / 5;
+
+        final List<Node> east = new ArrayList<>(streets + 2);
+        final List<Node> west = new ArrayList<>(streets + 2);
+        for (int i = 0; i <= streets + 1; i++) {
+            east.add(node(0, i * SPACING));
+            west.add(node(median, i * SPACING));
+        }
+
+        // eastbound from i to i + 1, westbound from i + 1 to i
+        final List<Way> eastWays = new ArrayList<>(streets + 1);
+        final List<Way> westWays = new ArrayList<>(streets + 1);
+        for (int i = 0; i <= streets; i++) {
+            eastWays.add(way("highway=primary oneway=yes lanes=" + lanes, east.get(i), east.get(i + 1)));
+            westWays.add(way("highway=primary oneway=yes lanes=" + lanes, west.get(i + 1), west.get(i)));
+        }
+
+        final List<Node> result = new ArrayList<>(2 * streets);
+        for (int i = 1; i <= streets; i++) {
+            final Node a = east.get(i);
+            final Node b = west.get(i);
+            final Way via = way("highway=primary lanes=2", a, b);
+            final Way south = way("highway=secondary lanes=2", node(-SPACING / 2, i * SPACING), a);
+            final Way north = way("highway=secondary lanes=2", b, node(median + SPACING / 2, i * SPACING));
+            final Way eastIn = eastWays.get(i - 1);
+            final Way eastOut = eastWays.get(i);
+            final Way westIn = westWays.get(i);
+            final Way westOut = westWays.get(i - 1);
+
+            connect(eastIn, a, eastOut, straight(lanes, lanes));
+            connect(eastIn, a, south, lanes + ":1");
+            connect(eastIn, a, via, north, "1:1");
+            connect(eastIn, a, via, westOut, "1:1");
+
+            connect(westIn, b, westOut, straight(lanes, lanes));
+            connect(westIn, b, north, lanes + ":1");
+            connect(westIn, b, via, south, "1:1");
+            connect(westIn, b, via, eastOut, "1:1");
+
+            connect(south, a, eastOut, "1:" + lanes);
+            connect(south, a, via, north, "1:1");
+            connect(south, a, via, westOut, "1:1");
+
+            connect(north, b, westOut, "1:" + lanes);
+            connect(north, b, via, south, "1:1");
+            connect(north, b, via, eastOut, "1:1");
+
+            result.add(a);
+            result.add(b);
+        }
+
+        return result;
+    }
+
+    private static String straight(int fromLanes, int toLanes) {
+        final StringBuilder result = new StringBuilder();
+        for (int i = 1; i <= fromLanes; i++) {
+            result.append(i == 1 ? "" : "|").append(i).append(':').append(Math.min(i, toLanes));
+        }
+        return result.toString();
+    }
+
+    private Node node(double lat, double lon) {
+        // a little off the grid, so that the ways aren't all of the same length
+        final double jitter = SPACING / 20;
+        final Node n = new Node(new LatLon(lat + (random.nextDouble() - 0.5) * jitter,
+                lon + (random.nextDouble() - 0.5) * jitter));
+        dataSet.addPrimitive(n);
+        return n;
+    }
+
+    private Way way(String tags, Node... nodes) {
+        final Way w = TestUtils.newWay(tags, nodes);
+        dataSet.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Connect two ways at a junction node
+     */
+    private void connect(Way from, Node via, Way to, String connectivity) {
+        if (to != null) {
+            connect(from, via, Collections.singletonList(via), to, connectivity);
+        }
+    }
+
+    /**
+     * Connect two ways through a via way
+     */
+    private void connect(Way from, Node junction, Way via, Way to, String connectivity) {
+        connect(from, junction, Collections.singletonList(via), to, connectivity);
+    }
+
+    /**
+     * @param junction The node at which the from way ends
+     */
+    private void connect(Way from, Node junction, List<? extends OsmPrimitive> via, Way to, String connectivity) {
+        final List<RelationMember> members = new ArrayList<>(via.size() + 2);
+        members.add(new RelationMember("from", from));
+        for (OsmPrimitive p : via) {
+            members.add(new RelationMember("via", p));
+        }
+        members.add(new RelationMember("to", to));
+
+        final Relation r = TestUtils.newRelation("type=connectivity connectivity=" + connectivity,
+                members.toArray(new RelationMember[0]));
+        if (random.nextDouble() < broken) {
+            final int fromLanes = Integer.parseInt(from.get("lanes")) + 1;
+            switch (random.nextInt(3)) {
+            case 0:
+                r.put("connectivity", fromLanes + ":1");
+                break;
+            case 1:
+                r.remove("connectivity");
+                break;
+            default:
+                r.setMember(0, new RelationMember("form", from));
+            }
+            brokenRelations.add(r);
+        }
+        dataSet.addPrimitive(r);
+
+        addExtraLane(from, junction);
+    }
+
+    private void addExtraLane(Way from, Node junction) {
+        if (!approaches.add(Arrays.asList(from.getUniqueId(), junction.getUniqueId()))
+                || random.nextDouble() >= extraLanes) {
+            return;
+        }
+
+        // the shortest ways, of the roundabouts, are about 40 m long
+        double length = 10 + random.nextInt(15);
+        final boolean broke = random.nextDouble() < broken;
+        if (broke) {
+            length *= 100;
+        }
+
+        final Relation r = TestUtils.newRelation(
+                "type=turnlanes:lengths lengths:right=" + String.format(Locale.ENGLISH, "%.1f", length),
+                new RelationMember("end", junction), new RelationMember("ways", from));
+        if (broke) {
+            brokenRelations.add(r);
+        }
+        dataSet.addPrimitive(r);
+    }
+}
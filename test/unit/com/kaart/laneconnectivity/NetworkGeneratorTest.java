@@ -0,0 +1,148 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+import com.kaart.laneconnectivity.NetworkGenerator.Layout;
+import com.kaart.laneconnectivity.NetworkGenerator.Network;
+import com.kaart.laneconnectivity.model.Issue;
+import com.kaart.laneconnectivity.model.ModelContainer;
+import com.kaart.laneconnectivity.model.Validator;
+import com.kaart.laneconnectivity.validation.ConnectivityRelationCheck;
+
+public class NetworkGeneratorTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * @return The relations with errors of the validator or the check
+     */
+    private static Set<Relation> getReported(DataSet dataSet) {
+        final Set<Relation> result = new HashSet<>();
+        for (Issue i : new Validator().validate(dataSet)) {
+            if (i.getSeverity() == Issue.Severity.ERROR) {
+                result.add(i.getRelation());
+            }
+        }
+
+        final ConnectivityRelationCheck check = new ConnectivityRelationCheck();
+        check.startTest(NullProgressMonitor.INSTANCE);
+        for (Relation r : dataSet.getRelations()) {
+            check.visit(r);
+        }
+        check.endTest();
+        for (TestError e : check.getErrors()) {
+            for (OsmPrimitive p : e.getPrimitives()) {
+                if (p instanceof Relation) {
+                    result.add((Relation) p);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> describe(DataSet dataSet) {
+        final List<String> result = new ArrayList<>();
+        for (Node n : dataSet.getNodes()) {
+            result.add(n.getCoor().toString());
+        }
+        for (Relation r : dataSet.getRelations()) {
+            result.add(r.getKeys() + " " + r.getMembersCount());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testDeterministic() {
+        for (Layout layout : Layout.values()) {
+            NetworkGenerator generator = new NetworkGenerator(7).withExtraLanes(0.5).withBroken(0.2);
+            Network a = generator.generate(layout, 20);
+            Network b = generator.generate(layout, 20);
+            Network c = new NetworkGenerator(8).withExtraLanes(0.5).withBroken(0.2).generate(layout, 20);
+
+            Assert.assertEquals(layout.toString(), describe(a.getDataSet()), describe(b.getDataSet()));
+            Assert.assertEquals(layout.toString(), a.getBroken().size(), b.getBroken().size());
+            Assert.assertFalse(layout.toString(), describe(a.getDataSet()).equals(describe(c.getDataSet())));
+        }
+    }
+
+    @Test
+    public void testSize() {
+        NetworkGenerator generator = new NetworkGenerator(1);
+        Assert.assertEquals(10, generator.generate(Layout.GRID, 10).getJunctions().size());
+        Assert.assertEquals(10, generator.generate(Layout.CORRIDOR, 10).getJunctions().size());
+        Assert.assertEquals(40, generator.generate(Layout.ROUNDABOUTS, 10).getJunctions().size());
+        Assert.assertEquals(20, generator.generate(Layout.DUAL_CARRIAGEWAYS, 10).getJunctions().size());
+        Assert.assertTrue(generator.generate(Layout.GRID, 0).getDataSet().allPrimitives().isEmpty());
+
+        // the corners of a grid join two ways
+        for (Layout layout : Layout.values()) {
+            for (Node n : generator.generate(layout, 9).getJunctions()) {
+                int ways = 0;
+                for (OsmPrimitive p : n.getReferrers()) {
+                    ways += p instanceof Way ? 1 : 0;
+                }
+                Assert.assertTrue(layout.toString(), ways >= 2);
+            }
+        }
+    }
+
+    @Test
+    public void testValid() {
+        for (Layout layout : Layout.values()) {
+            Network network = new NetworkGenerator(3).withExtraLanes(0.5).generate(layout, 25);
+
+            Assert.assertTrue(network.getBroken().isEmpty());
+            Assert.assertEquals(layout.toString(), Collections.emptySet(), getReported(network.getDataSet()));
+            boolean lengths = false;
+            for (Relation r : network.getDataSet().getRelations()) {
+                lengths |= r.hasTag("type", "turnlanes:lengths");
+            }
+            Assert.assertTrue(layout.toString(), lengths);
+        }
+    }
+
+    @Test
+    public void testBroken() {
+        for (Layout layout : Layout.values()) {
+            Network network = new NetworkGenerator(5).withExtraLanes(0.5).withBroken(0.3).generate(layout, 25);
+
+            Assert.assertFalse(layout.toString(), network.getBroken().isEmpty());
+            Assert.assertEquals(layout.toString(), network.getBroken(), getReported(network.getDataSet()));
+        }
+    }
+
+    @Test
+    public void testModel() {
+        for (Layout layout : Layout.values()) {
+            Network network = new NetworkGenerator(9).withExtraLanes(0.5).generate(layout, 4);
+
+            ModelContainer container = ModelContainer.create(network.getJunctions(), Collections.<Way>emptyList());
+            Assert.assertFalse(layout.toString(), container.getPrimaryJunctions().isEmpty());
+        }
+    }
+}
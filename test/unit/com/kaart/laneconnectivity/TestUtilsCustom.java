@@ -1,13 +1,21 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.laneconnectivity;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
 
+import org.junit.Assert;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 
 public final class TestUtilsCustom {
@@ -45,4 +53,49 @@ public final class TestUtilsCustom {
                 dataSet.addPrimitive(primitive);
         }
     }
+
+    /**
+     * Add a corridor of ways heading east from (0, 0) to a dataset, with a connectivity relation from each way to the
+     * next one via the node they share
+     *
+     * @param dataSet      The dataset to add the corridor to
+     * @param ways         The number of ways, each about 100 m long
+     * @param wayTags      The tags of the ways, e.g. {@code "highway=primary lanes=2 oneway=yes"}
+     * @param relationTags The tags of the relation with the given index, e.g.
+     *                     {@code "type=connectivity connectivity=1:1"}
+     * @return The relations in the order of the corridor, the to way of each one is the from way of the next one
+     */
+    public static List<Relation> addCorridor(DataSet dataSet, int ways, String wayTags,
+            IntFunction<String> relationTags) {
+        final List<Relation> relations = new ArrayList<>();
+        Node last = new Node(new LatLon(0, 0));
+        Way previous = null;
+        for (int i = 1; i <= ways; i++) {
+            final Node next = new Node(new LatLon(0, i * 0.001));
+            final Way way = TestUtils.newWay(wayTags, last, next);
+            addPrimitivesToDataSet(dataSet, way);
+            if (previous != null) {
+                final Relation r = TestUtils.newRelation(relationTags.apply(relations.size()),
+                        new RelationMember("from", previous), new RelationMember("via", last),
+                        new RelationMember("to", way));
+                dataSet.addPrimitive(r);
+                relations.add(r);
+            }
+            last = next;
+            previous = way;
+        }
+        return relations;
+    }
+
+    /**
+     * Check that an object can be garbage collected
+     *
+     * @param reference A weak reference to the object, the test must not reference it anymore
+     */
+    public static void assertCollectable(WeakReference<?> reference) {
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+        }
+        Assert.assertNull(reference.get());
+    }
 }
@@ -0,0 +1,164 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class ConnectivityIndexTest {
+    private Node junction;
+    private Way from;
+    private Way to;
+    private Relation relation;
+    private DataSet dataSet;
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+
+        junction = new Node(new LatLon(0, 0));
+        from = TestUtils.newWay("highway=residential lanes=2 oneway=yes", new Node(new LatLon(0, -0.1)), junction);
+        to = TestUtils.newWay("highway=residential lanes=2 oneway=yes", junction, new Node(new LatLon(0, 0.1)));
+        relation = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+        dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+    }
+
+    @Test
+    public void testConnectivity() {
+        ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        Assert.assertSame(index, ConnectivityIndex.of(dataSet));
+        Assert.assertEquals(Collections.singleton(relation), index.getConnectivity(from, Constants.ROLE_FROM));
+        Assert.assertEquals(Collections.singleton(relation), index.getConnectivity(to, Constants.ROLE_TO));
+        Assert.assertEquals(Collections.singleton(relation), index.getConnectivity(junction));
+        Assert.assertTrue(index.getConnectivity(from, Constants.ROLE_TO).isEmpty());
+        Assert.assertEquals(Collections.singletonList(relation), index.getConnectivityRelations());
+        Assert.assertTrue(index.getLengthsRelations().isEmpty());
+
+        Assert.assertTrue(ConnectivityIndex.of(null).getConnectivityRelations().isEmpty());
+    }
+
+    @Test
+    public void testUpdates() {
+        ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        Assert.assertEquals(1, index.getConnectivityRelations().size());
+
+        // swapped roles
+        relation.setMembers(Arrays.asList(new RelationMember("from", to), new RelationMember("via", junction),
+                new RelationMember("to", from)));
+        Assert.assertTrue(index.getConnectivity(from, Constants.ROLE_FROM).isEmpty());
+        Assert.assertEquals(Collections.singleton(relation), index.getConnectivity(from, Constants.ROLE_TO));
+
+        Relation added = TestUtils.newRelation("type=connectivity connectivity=2:2",
+                new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+        dataSet.addPrimitive(added);
+        Assert.assertEquals(Collections.singleton(added), index.getConnectivity(from, Constants.ROLE_FROM));
+        Assert.assertEquals(2, index.getConnectivity(junction).size());
+
+        relation.put("type", "route");
+        Assert.assertEquals(Collections.singleton(added), index.getConnectivity(junction));
+
+        added.setDeleted(true);
+        Assert.assertTrue(index.getConnectivity(junction).isEmpty());
+        Assert.assertTrue(index.getConnectivityRelations().isEmpty());
+    }
+
+    @Test
+    public void testSignature() {
+        ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        ConnectivityIndex.Signature signature = new ConnectivityIndex.Signature(from,
+                Collections.singletonList(junction), to);
+        Assert.assertEquals(signature, ConnectivityIndex.Signature.of(relation));
+        Assert.assertEquals(Collections.singleton(relation), index.getConnectivity(signature));
+        Assert.assertTrue(index.getDuplicates(relation).isEmpty());
+
+        Relation duplicate = TestUtils.newRelation("type=connectivity connectivity=2:2",
+                new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+        dataSet.addPrimitive(duplicate);
+        Assert.assertEquals(Collections.singleton(duplicate), index.getDuplicates(relation));
+        Assert.assertEquals(Collections.singleton(relation), index.getDuplicates(duplicate));
+
+        duplicate.setMembers(Arrays.asList(new RelationMember("from", to), new RelationMember("via", junction),
+                new RelationMember("to", from)));
+        Assert.assertTrue(index.getDuplicates(relation).isEmpty());
+
+        // relations without exactly one from and to way have no signature
+        duplicate.addMember(new RelationMember("to", to));
+        Assert.assertNull(ConnectivityIndex.Signature.of(duplicate));
+        Assert.assertTrue(index.getDuplicates(duplicate).isEmpty());
+    }
+
+    @Test
+    public void testLengths() {
+        Node end = to.lastNode();
+        Relation lengths = TestUtils.newRelation("type=turnlanes:lengths lengths:right=10",
+                new RelationMember("end", end), new RelationMember("ways", to));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, lengths);
+
+        ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        Assert.assertEquals(Collections.singleton(lengths), index.getLengths(to, end));
+        Assert.assertTrue(index.getLengths(to, junction).isEmpty());
+
+        // reversing the way reverses the direction of the route
+        to.setNodes(Arrays.asList(end, junction));
+        lengths.setMembers(Arrays.asList(new RelationMember("end", junction), new RelationMember("ways", to)));
+        Assert.assertEquals(Collections.singleton(lengths), index.getLengths(to, junction));
+        Assert.assertTrue(index.getLengths(to, end).isEmpty());
+
+        // broken relations are reported
+        lengths.setMembers(Collections.singletonList(new RelationMember("ways", to)));
+        try {
+            index.getLengths(to, junction);
+            Assert.fail();
+        } catch (UnexpectedDataException e) {
+            Assert.assertEquals(UnexpectedDataException.Kind.NO_MEMBER, e.getKind());
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        Relation added = TestUtils.newRelation("type=connectivity connectivity=2:2",
+                new RelationMember("from", to), new RelationMember("via", junction), new RelationMember("to", from));
+        dataSet.addPrimitive(added);
+
+        ConnectivityIndex index = ConnectivityIndex.of(dataSet);
+        Assert.assertEquals(Arrays.asList(added, relation), index.getConnectivityRelations());
+
+        // edited relations are indexed again, but keep their place
+        added.put("connectivity", "2:1");
+        Assert.assertEquals(Arrays.asList(added, relation), index.getConnectivityRelations());
+    }
+
+    @Test
+    public void testReleasesDataSet() {
+        ConnectivityIndex.of(dataSet).getConnectivityRelations();
+
+        WeakReference<DataSet> reference = new WeakReference<>(dataSet);
+        dataSet = null;
+        junction = null;
+        from = null;
+        to = null;
+        relation = null;
+        TestUtilsCustom.assertCollectable(reference);
+    }
+}
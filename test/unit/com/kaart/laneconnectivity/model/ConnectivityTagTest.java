@@ -0,0 +1,162 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Relation;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class ConnectivityTagTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @Test
+    public void testParse() {
+        ConnectivityTag tag = ConnectivityTag.parse("connectivity", "1:1|2:2,(3)");
+        Assert.assertEquals(3, tag.size());
+        Assert.assertArrayEquals(new int[] {1, 2}, tag.getFromLanes());
+        Assert.assertEquals(2, tag.getMaxFrom());
+        Assert.assertEquals(3, tag.getMaxTo());
+
+        Assert.assertEquals(1, tag.end(1) - tag.start(1));
+        Assert.assertEquals(1, tag.getTo(tag.start(1)));
+        Assert.assertFalse(tag.isOptional(tag.start(1)));
+
+        Assert.assertEquals(2, tag.end(2) - tag.start(2));
+        Assert.assertEquals(2, tag.getTo(tag.start(2)));
+        Assert.assertFalse(tag.isOptional(tag.start(2)));
+        Assert.assertEquals(3, tag.getTo(tag.start(2) + 1));
+        Assert.assertTrue(tag.isOptional(tag.start(2) + 1));
+
+        Assert.assertFalse(tag.hasFrom(3));
+        Assert.assertEquals(tag.start(3), tag.end(3));
+    }
+
+    @Test
+    public void testParseWhitespace() {
+        ConnectivityTag tag = ConnectivityTag.parse("connectivity", "3:1, (2) | 4 : 2,( 3 )");
+        Assert.assertEquals("3:1,(2)|4:2,(3)", tag.toString());
+    }
+
+    @Test
+    public void testParseEmpty() {
+        Assert.assertTrue(ConnectivityTag.parse("connectivity", null).isEmpty());
+        Assert.assertTrue(ConnectivityTag.parse("connectivity", "").isEmpty());
+        Assert.assertNull(ConnectivityTag.parse("connectivity", "").toTagValue());
+        Assert.assertEquals(0, ConnectivityTag.parse("connectivity", null).getMaxTo());
+    }
+
+    @Test
+    public void testParseUnordered() {
+        ConnectivityTag tag = ConnectivityTag.parse("connectivity", "2:3,1|1:(2)|1:2");
+        Assert.assertEquals("1:2|2:1,3", tag.toString());
+    }
+
+    @Test
+    public void testParseInvalid() {
+        for (String value : new String[] {"1", "1:", ":1", "a:1", "1:(2", "1:2)", "1:2 3", "99999999999:1"}) {
+            try {
+                ConnectivityTag.parse("connectivity", value);
+                Assert.fail(value);
+            } catch (UnexpectedDataException e) {
+                Assert.assertEquals(UnexpectedDataException.Kind.INVALID_TAG_FORMAT, e.getKind());
+            }
+        }
+    }
+
+    @Test
+    public void testModify() {
+        ConnectivityTag tag = ConnectivityTag.parse("connectivity", "1:1|2:2,(3)");
+        Assert.assertEquals("1:1|2:2,(3)|3:3", tag.with(3, 3, false).toString());
+        Assert.assertEquals("1:1|2:2,3", tag.with(2, 3, false).toString());
+        Assert.assertEquals("1:1,(2)|2:2,(3)", tag.with(1, 2, true).toString());
+        Assert.assertEquals("1:1", tag.withoutFrom(2).toString());
+        Assert.assertSame(tag, tag.withoutFrom(4));
+        Assert.assertNull(tag.withoutFrom(1).withoutFrom(2).toTagValue());
+        // the original is unchanged
+        Assert.assertEquals("1:1|2:2,(3)", tag.toString());
+    }
+
+    @Test
+    public void testMap() {
+        Map<Integer, Map<Integer, Boolean>> lanes = new TreeMap<>();
+        lanes.put(2, new TreeMap<>());
+        lanes.get(2).put(3, true);
+        lanes.get(2).put(2, false);
+        lanes.put(1, new TreeMap<>());
+        lanes.get(1).put(1, false);
+
+        ConnectivityTag tag = ConnectivityTag.fromMap(lanes);
+        Assert.assertEquals("1:1|2:2,(3)", tag.toString());
+        Assert.assertEquals(lanes, tag.toMap());
+        Assert.assertEquals(tag, ConnectivityTag.parse("connectivity", Turn.join(lanes)));
+    }
+
+    @Test
+    public void testOfCached() {
+        ParsedTagCache.clear();
+        Relation relation = TestUtils.newRelation("connectivity=1:1|2:2");
+        ConnectivityTag tag = ConnectivityTag.of(relation);
+        // relations without a data set aren't cached
+        Assert.assertNotSame(tag, ConnectivityTag.of(relation));
+
+        DataSet dataSet = new DataSet();
+        dataSet.addPrimitive(relation);
+        tag = ConnectivityTag.of(relation);
+        Assert.assertSame(tag, ConnectivityTag.of(relation));
+
+        // changed values are reparsed, even without invalidation
+        relation.put("connectivity", "1:2");
+        Assert.assertEquals("1:2", ConnectivityTag.of(relation).toString());
+
+        tag = ConnectivityTag.of(relation);
+        ParsedTagCache.invalidate(relation);
+        Assert.assertNotSame(tag, ConnectivityTag.of(relation));
+        Assert.assertEquals(tag, ConnectivityTag.of(relation));
+
+        // changed relations are dropped by the cache
+        relation.put("connectivity", "1:1");
+        Assert.assertEquals(0, ParsedTagCache.size());
+
+        ParsedTagCache.clear();
+        Assert.assertEquals(0, ParsedTagCache.size());
+        for (int i = 0; i <= ParsedTagCache.MAX_RELATIONS; i++) {
+            Relation r = TestUtils.newRelation("connectivity=1:1");
+            dataSet.addPrimitive(r);
+            ConnectivityTag.of(r);
+        }
+        Assert.assertEquals(ParsedTagCache.MAX_RELATIONS, ParsedTagCache.size());
+    }
+
+    @Test
+    public void testCacheReleasesDataSet() {
+        ParsedTagCache.clear();
+        DataSet dataSet = new DataSet();
+        Relation relation = TestUtils.newRelation("connectivity=1:1");
+        dataSet.addPrimitive(relation);
+        ConnectivityTag.of(relation);
+        Assert.assertEquals(1, ParsedTagCache.size());
+
+        WeakReference<DataSet> reference = new WeakReference<>(dataSet);
+        dataSet = null;
+        relation = null;
+        TestUtilsCustom.assertCollectable(reference);
+        Assert.assertEquals(0, ParsedTagCache.size());
+    }
+}
@@ -0,0 +1,45 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class DataSetVersionTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @Test
+    public void testVersion() {
+        DataSet dataSet = new DataSet();
+        DataSet other = new DataSet();
+        Way way = TestUtils.newWay("highway=residential", new Node(new LatLon(0, 0)), new Node(new LatLon(0, 0.1)));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, way);
+
+        long version = DataSetVersion.of(dataSet);
+        Assert.assertEquals(version, DataSetVersion.of(dataSet));
+        Assert.assertEquals(0, DataSetVersion.of(other));
+
+        way.put("lanes", "2");
+        Assert.assertEquals(version + 1, DataSetVersion.of(dataSet));
+        Assert.assertEquals(0, DataSetVersion.of(other));
+
+        way.firstNode().setCoor(new LatLon(0, 0.01));
+        Assert.assertTrue(DataSetVersion.of(dataSet) > version + 1);
+    }
+}
@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+public class DistanceTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @After
+    public void tearDown() {
+        Distance.set(Distance.FAST);
+    }
+
+    @Test
+    public void testErrorBound() {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++) {
+            // references up to 70° and segments up to ~1 km within ~5 km of the reference
+            final LatLon reference = new LatLon(random.nextDouble() * 140 - 70, random.nextDouble() * 360 - 180);
+            final LatLon a = offset(reference, random, 0.05);
+            final LatLon b = offset(a, random, 0.01);
+
+            final double exact = Distance.EXACT.near(reference).between(a, b);
+            final double fast = Distance.FAST.near(reference).between(a, b);
+            Assert.assertEquals(exact, fast, 1e-3 + exact * 1e-5);
+        }
+    }
+
+    @Test
+    public void testAntimeridian() {
+        final LatLon a = new LatLon(10, 179.9995);
+        final LatLon b = new LatLon(10, -179.9995);
+
+        final double exact = Distance.EXACT.near(a).between(a, b);
+        Assert.assertEquals(exact, Distance.FAST.near(a).between(a, b), 1e-3);
+        Assert.assertEquals(exact, Distance.FAST.near(b).between(b, a), 1e-3);
+    }
+
+    @Test
+    public void testLength() {
+        final Node a = new Node(new LatLon(50, 8));
+        final Node b = new Node(new LatLon(50.001, 8));
+        final Node c = new Node(new LatLon(50.001, 8.002));
+
+        final double expected = a.getCoor().greatCircleDistance(b.getCoor())
+                + b.getCoor().greatCircleDistance(c.getCoor());
+        Assert.assertEquals(expected, Distance.EXACT.near(a.getCoor()).length(Arrays.asList(a, b, c)), 1e-9);
+        Assert.assertEquals(expected, Distance.FAST.near(a.getCoor()).length(Arrays.asList(a, b, c)), 1e-3);
+
+        Distance.set(Distance.EXACT);
+        Assert.assertSame(Distance.EXACT, Distance.get());
+    }
+
+    private static LatLon offset(LatLon origin, Random random, double degrees) {
+        return new LatLon(origin.lat() + (random.nextDouble() * 2 - 1) * degrees,
+                LatLon.toIntervalLon(origin.lon() + (random.nextDouble() * 2 - 1) * degrees));
+    }
+}
@@ -0,0 +1,136 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class IncrementalValidatorTest {
+    private DataSet dataSet;
+    private List<Way> ways;
+    private List<Relation> relations;
+    private IncrementalValidator validator;
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+
+        // a corridor of oneways with two lanes, connected lane by lane
+        dataSet = new DataSet();
+        relations = TestUtilsCustom.addCorridor(dataSet, 6, "highway=primary lanes=2 oneway=yes",
+                i -> "type=connectivity connectivity=1:1|2:2 lanes=1,2");
+        ways = new ArrayList<>();
+        ways.add(relations.get(0).getMember(0).getWay());
+        for (Relation r : relations) {
+            ways.add(r.getMember(2).getWay());
+        }
+
+        validator = new IncrementalValidator(dataSet, new Validator());
+        validator.start();
+    }
+
+    private static List<String> describe(List<Issue> issues) {
+        List<String> result = new ArrayList<>();
+        for (Issue i : issues) {
+            result.add(i.getSeverity() + " " + i.getDescription() + " " + i.getRelation() + " " + i.getPrimitives());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private void assertCurrent() {
+        Assert.assertTrue(validator.isDirty());
+        List<Issue> issues = validator.update();
+        Assert.assertFalse(validator.isDirty());
+        Assert.assertEquals(describe(new Validator().validate(dataSet)), describe(issues));
+    }
+
+    @Test
+    public void testUpdates() {
+        Assert.assertTrue(validator.update().isEmpty());
+        Assert.assertFalse(validator.isDirty());
+
+        // a missing lane and an unreferenced lane
+        relations.get(1).put("lanes", "1,3");
+        assertCurrent();
+        Assert.assertEquals(2, validator.getIssues().size());
+
+        // more lanes on a way change the lanes at the junction of the relation from it
+        ways.get(2).put("lanes", "3");
+        assertCurrent();
+
+        // an extra lane of a lengths relation changes the lanes of the connectivity relation at its end
+        Relation lengths = TestUtils.newRelation("type=turnlanes:lengths lengths:right=10",
+                new RelationMember("end", ways.get(3).lastNode()), new RelationMember("ways", ways.get(3)));
+        dataSet.addPrimitive(lengths);
+        assertCurrent();
+
+        relations.get(3).put("extra_lanes", "1");
+        assertCurrent();
+
+        // moving a node makes the extra lane longer than its way
+        ways.get(3).firstNode().setCoor(new LatLon(0, 0.00395));
+        assertCurrent();
+
+        relations.get(1).put("lanes", "1,2");
+        relations.get(0).setDeleted(true);
+        assertCurrent();
+
+        lengths.setMembers(Collections.singletonList(new RelationMember("ways", ways.get(3))));
+        assertCurrent();
+
+        // the issues of a relation which is no longer a connectivity relation are dropped
+        relations.get(2).put("lanes", "1,3");
+        assertCurrent();
+        relations.get(2).put("type", "restriction");
+        assertCurrent();
+
+        validator.stop();
+        relations.get(2).put("lanes", "7");
+        Assert.assertFalse(validator.isDirty());
+    }
+
+    @Test
+    public void testOrder() {
+        relations.get(1).put("lanes", "1,3");
+        relations.get(3).put("lanes", "1,3");
+        validator.update();
+        List<Relation> order = getRelations(validator.getIssues());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(relations.get(1), relations.get(3))), new HashSet<>(order));
+
+        // the issues of a revalidated relation keep their place
+        order.get(0).put("lanes", "1,4");
+        Assert.assertEquals(order, getRelations(validator.update()));
+        Assert.assertTrue(describe(validator.getIssues()).toString().contains("4"));
+    }
+
+    private static List<Relation> getRelations(List<Issue> issues) {
+        List<Relation> result = new ArrayList<>();
+        for (Issue i : issues) {
+            if (i.getRelation() != null && !result.contains(i.getRelation())) {
+                result.add(i.getRelation());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class LaneProfileTest {
+    private Way way;
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+        LaneProfile.clear();
+
+        way = TestUtils.newWay("highway=residential lanes=3 lanes:backward=1", new Node(new LatLon(0, 0)),
+                new Node(new LatLon(0.1, 0.1)));
+    }
+
+    @Test
+    public void testProfile() {
+        LaneProfile profile = LaneProfile.of(way);
+        Assert.assertTrue(profile.isRoad());
+        Assert.assertFalse(profile.isOneway());
+        Assert.assertEquals(3, profile.getLanes());
+        Assert.assertEquals(2, profile.getRegularCount(true));
+        Assert.assertEquals(1, profile.getRegularCount(false));
+        Assert.assertTrue(profile.getErrors().isEmpty());
+
+        way.put("highway", "footway");
+        way.put("oneway", "-1");
+        profile = LaneProfile.of(way);
+        Assert.assertFalse(profile.isRoad());
+        Assert.assertTrue(profile.isReversed());
+        Assert.assertEquals(0, profile.getRegularCount(true));
+        Assert.assertEquals(3, profile.getRegularCount(false));
+    }
+
+    @Test
+    public void testErrors() {
+        way.put("lanes:backward", "one");
+        LaneProfile profile = LaneProfile.of(way);
+        Assert.assertEquals(3, profile.getLanes());
+        Assert.assertEquals("one", profile.getErrors().get("lanes:backward"));
+        try {
+            profile.getRegularCount(true);
+            Assert.fail();
+        } catch (UnexpectedDataException e) {
+            Assert.assertEquals(UnexpectedDataException.Kind.INVALID_TAG_FORMAT, e.getKind());
+        }
+
+        way.remove("lanes");
+        profile = LaneProfile.of(way);
+        Assert.assertFalse(profile.hasLanes());
+        try {
+            profile.getLanes();
+            Assert.fail();
+        } catch (UnexpectedDataException e) {
+            Assert.assertEquals(UnexpectedDataException.Kind.MISSING_TAG, e.getKind());
+        }
+    }
+
+    @Test
+    public void testCache() {
+        Assert.assertNotSame(LaneProfile.of(way), LaneProfile.of(way));
+        Assert.assertEquals(0, LaneProfile.size());
+
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, way);
+        LaneProfile profile = LaneProfile.of(way);
+        Assert.assertSame(profile, LaneProfile.of(way));
+        Assert.assertEquals(1, LaneProfile.size());
+
+        way.put("lanes", "4");
+        Assert.assertEquals(0, LaneProfile.size());
+        Assert.assertEquals(4, LaneProfile.of(way).getLanes());
+
+        dataSet.removePrimitive(way);
+        Assert.assertEquals(0, LaneProfile.size());
+    }
+
+    @Test
+    public void testCacheReleasesDataSet() {
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, way);
+        LaneProfile.of(way);
+        Assert.assertEquals(1, LaneProfile.size());
+
+        WeakReference<DataSet> reference = new WeakReference<>(dataSet);
+        dataSet = null;
+        way = null;
+        TestUtilsCustom.assertCollectable(reference);
+        Assert.assertEquals(0, LaneProfile.size());
+    }
+}
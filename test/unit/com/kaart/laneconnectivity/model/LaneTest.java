@@ -1,15 +1,22 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.laneconnectivity.model;
 
+import java.util.Collections;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
 public class LaneTest {
     /**
      * Setup test.
@@ -49,4 +56,25 @@ public class LaneTest {
         Assert.assertEquals(0, Lane.getRegularCount(way, way.lastNode()));
         Assert.assertEquals(3, Lane.getRegularCount(way, way.firstNode()));
     }
+
+    @Test
+    public void testTurns() {
+        Node junction = new Node(new LatLon(0, 0));
+        Way from = TestUtils.newWay("highway=residential lanes=2 oneway=yes", new Node(new LatLon(0, -0.1)), junction);
+        Way to = TestUtils.newWay("highway=residential lanes=2 oneway=yes", junction, new Node(new LatLon(0, 0.1)));
+        Relation relation = TestUtils.newRelation("type=connectivity connectivity=1:1|2:2,(1)",
+                new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+        TestUtilsCustom.addPrimitivesToDataSet(new DataSet(), relation);
+
+        ModelContainer container = ModelContainer.create(Collections.singleton(junction), Collections.<Way>emptySet());
+        Road.End end = container.getJunction(junction).getRoadEnd(from);
+        Assert.assertEquals(2, end.getLanes().size());
+        for (Lane lane : end.getLanes()) {
+            Assert.assertEquals(1, lane.getTurns().size());
+            Turn turn = lane.getTurns().iterator().next();
+            Assert.assertSame(lane, turn.getFrom());
+            Assert.assertSame(relation, turn.getRelation());
+        }
+        Assert.assertEquals(2, container.getJunction(junction).getRoadEnd(to).getTurns().size());
+    }
 }
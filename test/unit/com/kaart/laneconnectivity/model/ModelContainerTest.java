@@ -0,0 +1,192 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class ModelContainerTest {
+    private Node junction;
+    private Way from;
+    private Way to;
+    private Relation relation;
+    private DataSet dataSet;
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+
+        junction = new Node(new LatLon(0, 0));
+        from = TestUtils.newWay("highway=residential lanes=2 oneway=yes", new Node(new LatLon(0, -0.1)), junction);
+        to = TestUtils.newWay("highway=residential lanes=2 oneway=yes", junction, new Node(new LatLon(0, 0.1)));
+        relation = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+        dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+    }
+
+    private ModelContainer create() {
+        return ModelContainer.create(Collections.singleton(junction), Collections.<Way>emptySet());
+    }
+
+    private static int countTurns(Road.End end) {
+        int turns = 0;
+        for (Lane l : end.getLanes()) {
+            turns += l.getTurns().size();
+        }
+        return turns;
+    }
+
+    @Test
+    public void testUpdateConnectivity() {
+        ModelContainer container = create();
+        Road.End end = container.getJunction(junction).getRoadEnd(from);
+        Assert.assertEquals(1, countTurns(end));
+
+        relation.put("connectivity", "1:1|2:2");
+        ModelContainer updated = container.update(Collections.singleton(relation));
+        Assert.assertNotSame(container, updated);
+        Road.End updatedEnd = updated.getJunction(junction).getRoadEnd(from);
+        Assert.assertEquals(2, countTurns(updatedEnd));
+        Assert.assertEquals(2, updated.getJunction(junction).getRoadEnd(to).getTurns().size());
+        Assert.assertSame(updated, updatedEnd.getLanes().get(0).getContainer());
+        Assert.assertSame(updatedEnd, updatedEnd.getLanes().get(0).getTurns().iterator().next().getFrom()
+                .getOutgoingRoadEnd());
+
+        // the displayed container isn't changed
+        Assert.assertSame(end, container.getJunction(junction).getRoadEnd(from));
+        Assert.assertEquals(1, countTurns(end));
+
+        relation.setDeleted(true);
+        Assert.assertEquals(0, countTurns(updated.update(Collections.singleton(relation)).getJunction(junction)
+                .getRoadEnd(from)));
+        Assert.assertEquals(2, countTurns(updatedEnd));
+    }
+
+    @Test
+    public void testUpdateCopiesUnaffectedTurns() {
+        // a second junction at the end of the to way, with a relation of its own
+        Node second = to.lastNode();
+        Way next = TestUtils.newWay("highway=residential lanes=2 oneway=yes", second, new Node(new LatLon(0, 0.2)));
+        Relation other = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                new RelationMember("from", to), new RelationMember("via", second), new RelationMember("to", next));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, other);
+        ModelContainer container = ModelContainer.create(new HashSet<>(Arrays.asList(junction, second)),
+                Collections.<Way>emptySet());
+        Assert.assertEquals(1, container.getJunction(second).getRoadEnd(next).getTurns().size());
+
+        // only the change of the first relation is reported, the end of the next way copies its turns
+        relation.put("connectivity", "1:1|2:2");
+        other.put("connectivity", "1:1|2:2");
+        ModelContainer updated = container.update(Collections.singleton(relation));
+        Assert.assertEquals(2, countTurns(updated.getJunction(junction).getRoadEnd(from)));
+        Road.End copied = updated.getJunction(second).getRoadEnd(next);
+        Assert.assertEquals(1, copied.getTurns().size());
+
+        // the copied turns refer to the lanes and road ends of the new container
+        Turn turn = copied.getTurns().iterator().next();
+        Assert.assertSame(other, turn.getRelation());
+        Assert.assertSame(copied, turn.getTo());
+        Assert.assertSame(updated.getJunction(second).getRoadEnd(to), turn.getFrom().getOutgoingRoadEnd());
+        Assert.assertSame(updated, turn.getFrom().getContainer());
+    }
+
+    @Test
+    public void testUpdateUnrelated() {
+        ModelContainer container = create();
+        Node other = new Node(new LatLon(1, 1));
+        dataSet.addPrimitive(other);
+        ModelContainer updated = container.update(Collections.singleton(other));
+        Assert.assertNotSame(container, updated);
+        Assert.assertEquals(container.getPrimaryJunctions().size(), updated.getPrimaryJunctions().size());
+        Assert.assertEquals(1, countTurns(updated.getJunction(junction).getRoadEnd(from)));
+    }
+
+    @Test
+    public void testUpdateStructural() {
+        ModelContainer container = create();
+
+        from.put("lanes", "3");
+        ModelContainer updated = container.update(Collections.singleton(from));
+        Assert.assertNotSame(container, updated);
+        Assert.assertEquals(3, updated.getJunction(junction).getRoadEnd(from).getLanes().size());
+
+        Assert.assertNotSame(updated, updated.update(null));
+    }
+
+    @Test
+    public void testIsRelevant() {
+        ModelContainer container = create();
+        Assert.assertTrue(container.isRelevant(junction));
+        Assert.assertTrue(container.isRelevant(from));
+        Assert.assertTrue(container.isRelevant(from.firstNode()));
+        Assert.assertTrue(container.isRelevant(relation));
+
+        Node other = new Node(new LatLon(1, 1));
+        Way unrelated = TestUtils.newWay("highway=residential", other, new Node(new LatLon(1, 1.1)));
+        Relation unrelatedRelation = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                new RelationMember("from", unrelated), new RelationMember("via", other));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, unrelatedRelation);
+        Assert.assertFalse(container.isRelevant(other));
+        Assert.assertFalse(container.isRelevant(unrelated));
+        Assert.assertFalse(container.isRelevant(unrelatedRelation));
+
+        // a new road at the junction
+        Way added = TestUtils.newWay("highway=residential", junction, new Node(new LatLon(0.1, 0)));
+        Assert.assertTrue(container.isRelevant(added));
+    }
+
+    @Test
+    public void testIsRelevantMovedRelation() {
+        ModelContainer container = create();
+        ModelContainer lost = create();
+
+        // the relations are only checked after they changed
+        Node other = new Node(new LatLon(1, 1));
+        Way unrelated = TestUtils.newWay("highway=residential", other, new Node(new LatLon(1, 1.1)));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, unrelated);
+        relation.setMembers(Arrays.asList(new RelationMember("from", unrelated), new RelationMember("via", other)));
+        Assert.assertTrue(container.isRelevant(relation));
+
+        relation.setMembers(null);
+        Assert.assertTrue(lost.isRelevant(relation));
+    }
+
+    @Test
+    public void testClose() {
+        Node end = new Node(new LatLon(0, 0.2));
+        Way next = TestUtils.newWay("highway=residential lanes=2 oneway=yes", to.lastNode(), end);
+        Way last = TestUtils.newWay("highway=residential lanes=2 oneway=yes", end, new Node(new LatLon(0, 0.3)));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet,
+                TestUtils.newRelation("type=connectivity connectivity=1:1", new RelationMember("from", from),
+                        new RelationMember("via", to), new RelationMember("to", next)),
+                TestUtils.newRelation("type=connectivity connectivity=1:1", new RelationMember("from", to),
+                        new RelationMember("via", next), new RelationMember("to", last)));
+
+        Set<Node> nodes = new HashSet<>(Collections.singleton(junction));
+        Set<Way> ways = new HashSet<>();
+        ModelContainer.close(nodes, ways);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(junction, to.lastNode(), end)), nodes);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(to, next)), ways);
+    }
+}
@@ -0,0 +1,66 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+public class RouteTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @Test
+    public void testLengths() {
+        Node a = new Node(new LatLon(0, 0));
+        Node b = new Node(new LatLon(0, 0.001));
+        Node c = new Node(new LatLon(0, 0.002));
+        Node d = new Node(new LatLon(0, 0.004));
+        Way first = TestUtils.newWay("highway=residential", a, b);
+        Way second = TestUtils.newWay("highway=residential", c, b);
+        Way third = TestUtils.newWay("highway=residential", c, d);
+
+        // ways are given from the end
+        Route route = Route.create(Arrays.asList(third, second, first), d);
+        Assert.assertEquals(Arrays.asList(first, second, third), route.getWays());
+
+        double l1 = a.getCoor().greatCircleDistance(b.getCoor());
+        double l2 = b.getCoor().greatCircleDistance(c.getCoor());
+        double l3 = c.getCoor().greatCircleDistance(d.getCoor());
+        Assert.assertEquals(l1, route.getFirstSegment().getLength(), 1e-9);
+        Assert.assertEquals(l1 + l2 + l3, route.getLength(), 1e-9);
+        Assert.assertEquals(l2 + l3, route.getLengthFrom(first), 1e-9);
+        Assert.assertEquals(0, route.getLengthFrom(third), 1e-9);
+        Assert.assertEquals(l1 + l2, route.getOffset(2), 1e-9);
+
+        Assert.assertEquals(0, route.getSegmentIndex(-1));
+        Assert.assertEquals(0, route.getSegmentIndex(l1));
+        Assert.assertEquals(1, route.getSegmentIndex(l1 + 1));
+        Assert.assertEquals(2, route.getSegmentIndex(l1 + l2 + 1));
+        Assert.assertEquals(2, route.getSegmentIndex(route.getLength() * 2));
+
+        Route sub = route.subRoute(1, 3);
+        Assert.assertEquals(l2 + l3, sub.getLength(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthFromUnknownWay() {
+        Node a = new Node(new LatLon(0, 0));
+        Node b = new Node(new LatLon(0, 0.001));
+        Route route = Route.create(Arrays.asList(TestUtils.newWay("highway=residential", a, b)), b);
+        route.getLengthFrom(TestUtils.newWay("highway=residential", a, b));
+    }
+}
@@ -0,0 +1,77 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+public class TurnlanesUtilsTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static List<Node> nodes(int count) {
+        final List<Node> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(new Node(new LatLon(0, i * 0.001)));
+        }
+        return result;
+    }
+
+    @Test
+    public void testOrderWays() {
+        List<Node> n = nodes(5);
+        Way a = TestUtils.newWay("highway=residential", n.get(0), n.get(1));
+        Way b = TestUtils.newWay("highway=residential", n.get(2), n.get(1));
+        Way c = TestUtils.newWay("highway=residential", n.get(2), n.get(3));
+        Way d = TestUtils.newWay("highway=residential", n.get(3), n.get(4));
+
+        // the ways are given out of order, and b is reversed
+        List<Route> routes = TurnlanesUtils.orderWays(Arrays.asList(c, a, d, b), Arrays.asList(n.get(0), n.get(3),
+                n.get(4)));
+        Assert.assertEquals(2, routes.size());
+        Assert.assertEquals(Arrays.asList(a, b, c), routes.get(0).getWays());
+        Assert.assertEquals(n.get(0), routes.get(0).getStart());
+        Assert.assertEquals(n.get(3), routes.get(0).getEnd());
+        Assert.assertEquals(Arrays.asList(d), routes.get(1).getWays());
+    }
+
+    @Test
+    public void testOrderWaysUnorderable() {
+        List<Node> n = nodes(6);
+        Way a = TestUtils.newWay("highway=residential", n.get(0), n.get(1));
+        Way b = TestUtils.newWay("highway=residential", n.get(1), n.get(2));
+        Way dangling = TestUtils.newWay("highway=residential", n.get(3), n.get(4));
+        Way deadEnd = TestUtils.newWay("highway=residential", n.get(0), n.get(5));
+
+        List<Way> unordered = new ArrayList<>();
+        List<Route> routes = TurnlanesUtils.orderWays(Arrays.asList(a, b, dangling, deadEnd), Arrays.asList(n.get(0),
+                n.get(2)), unordered);
+        Assert.assertEquals(1, routes.size());
+        Assert.assertEquals(Arrays.asList(b, a), routes.get(0).getWays());
+        Assert.assertEquals(Arrays.asList(deadEnd, dangling), unordered);
+
+        try {
+            TurnlanesUtils.orderWays(Arrays.asList(a, dangling), Collections.singleton(n.get(0)));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,170 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class ValidatorTest {
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @Test
+    public void testUnorderedLengthsWays() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(new Node(new LatLon(0, i * 0.001)));
+        }
+        Way a = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(0), nodes.get(1));
+        Way b = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(1), nodes.get(2));
+        Way c = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(2), nodes.get(3));
+        // ordered from the end node backwards would be c, b, a
+        Relation relation = TestUtils.newRelation("type=turnlanes:lengths lengths:right=10",
+                new RelationMember("ways", b), new RelationMember("end", nodes.get(3)), new RelationMember("ways", a),
+                new RelationMember("ways", c));
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+
+        Issue unordered = null;
+        for (Issue issue : new Validator().validate(dataSet)) {
+            if (issue.getQuickFix() != Issue.QuickFix.NONE) {
+                unordered = issue;
+            }
+        }
+        Assert.assertNotNull(unordered);
+        Assert.assertEquals("The ways of the lengths-relation are unordered.", unordered.getDescription());
+
+        Assert.assertTrue(unordered.getQuickFix().perform());
+        Assert.assertEquals(Arrays.asList(c, b, a, nodes.get(3)), relation.getMemberPrimitivesList());
+        Assert.assertEquals("ways", relation.getMember(0).getRole());
+    }
+
+    @Test
+    public void testDisconnectedViaWays() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            nodes.add(new Node(new LatLon(0, i * 0.001)));
+        }
+        Way from = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(0), nodes.get(1));
+        Way via1 = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(1), nodes.get(2));
+        Way via2 = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(3), nodes.get(4));
+        Way to = TestUtils.newWay("highway=primary lanes=1 oneway=yes", nodes.get(4), nodes.get(5));
+        Relation relation = TestUtils.newRelation("type=connectivity connectivity=1:1",
+                new RelationMember("from", from), new RelationMember("via", via1), new RelationMember("via", via2),
+                new RelationMember("to", to));
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+
+        boolean found = false;
+        for (Issue issue : new Validator().validate(dataSet)) {
+            found |= "The via-ways of the turns-relation are disconnected.".equals(issue.getDescription());
+        }
+        Assert.assertTrue(found);
+    }
+
+    @Test
+    public void testParallel() {
+        // a corridor with more relations than the parallel threshold, every third one referencing a missing lane
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addCorridor(dataSet, Validator.PARALLEL_THRESHOLD + 50, "highway=primary lanes=2 oneway=yes",
+                i -> "type=connectivity connectivity=1:1 lanes=" + (i % 3 == 0 ? "3" : "1"));
+
+        List<Issue> sequential = new Validator().validate(dataSet);
+        List<Issue> parallel = new Validator(true).validate(dataSet);
+        Assert.assertFalse(sequential.isEmpty());
+        Assert.assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assert.assertEquals(sequential.get(i).getDescription(), parallel.get(i).getDescription());
+            Assert.assertEquals(sequential.get(i).getRelation(), parallel.get(i).getRelation());
+            Assert.assertEquals(sequential.get(i).getPrimitives(), parallel.get(i).getPrimitives());
+        }
+    }
+
+    @Test
+    public void testBatches() {
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addCorridor(dataSet, Validator.BATCH_SIZE + 2, "highway=primary lanes=1 oneway=yes",
+                i -> "type=connectivity connectivity=1:1 lanes=2");
+
+        List<List<Issue>> batches = new ArrayList<>();
+        List<Issue> issues = new Validator().validate(dataSet, NullProgressMonitor.INSTANCE, batches::add);
+        // two batches of relations, one of unreferenced lanes
+        Assert.assertEquals(3, batches.size());
+        List<Issue> streamed = new ArrayList<>();
+        for (List<Issue> batch : batches) {
+            streamed.addAll(batch);
+        }
+        Assert.assertEquals(issues, streamed);
+        Assert.assertEquals(issues.size(), new Validator().validate(dataSet).size());
+    }
+
+    @Test
+    public void testArea() {
+        // two junctions far apart, each with a relation referencing a missing lane
+        DataSet dataSet = new DataSet();
+        List<Relation> relations = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Node junction = new Node(new LatLon(i, 0));
+            Way from = TestUtils.newWay("highway=primary lanes=1 oneway=yes", new Node(new LatLon(i, -0.001)),
+                    junction);
+            Way to = TestUtils.newWay("highway=primary lanes=1 oneway=yes", junction, new Node(new LatLon(i, 0.001)));
+            Relation r = TestUtils.newRelation("type=connectivity connectivity=1:1 lanes=2",
+                    new RelationMember("from", from), new RelationMember("via", junction), new RelationMember("to", to));
+            TestUtilsCustom.addPrimitivesToDataSet(dataSet, r);
+            relations.add(r);
+        }
+        // a relation from the to way of the first relation, reached through that way, which is in the area
+        Way to = relations.get(0).getMember(2).getWay();
+        Way other = TestUtils.newWay("highway=primary lanes=1 oneway=yes", to.lastNode(),
+                new Node(new LatLon(0, 0.002)));
+        Relation next = TestUtils.newRelation("type=connectivity connectivity=1:1 lanes=1",
+                new RelationMember("from", to), new RelationMember("via", other.firstNode()),
+                new RelationMember("to", other));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, next);
+        // a relation referencing a missing lane with all its ways outside of the area, only reached through the to
+        // way of the previous relation
+        Way last = TestUtils.newWay("highway=primary lanes=1 oneway=yes", other.lastNode(),
+                new Node(new LatLon(0, 0.003)));
+        Relation outside = TestUtils.newRelation("type=connectivity connectivity=1:1 lanes=2",
+                new RelationMember("from", other), new RelationMember("via", last.firstNode()),
+                new RelationMember("to", last));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, outside);
+
+        BBox area = new BBox(-0.0005, -0.0005, 0.0005, 0.0005);
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList(relations.get(0), next, outside)),
+                Validator.getRelations(dataSet, area));
+
+        List<Issue> issues = new Validator().validate(dataSet, area, NullProgressMonitor.INSTANCE, batch -> { });
+        List<Relation> reported = new ArrayList<>();
+        for (Issue issue : issues) {
+            if (issue.getRelation() != null) {
+                reported.add(issue.getRelation());
+            }
+        }
+        Assert.assertEquals(Arrays.asList(relations.get(0), outside), reported);
+    }
+}
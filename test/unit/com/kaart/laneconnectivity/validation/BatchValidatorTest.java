@@ -0,0 +1,164 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
+public class BatchValidatorTest {
+    private DataSet dataSet;
+    private Relation relation;
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+
+        Node connection = new Node(new LatLon(0, 0));
+        relation = TestUtils.newRelation("type=connectivity connectivity=3:1",
+                new RelationMember("from", TestUtils.newWay("highway=primary lanes=2 oneway=yes",
+                        new Node(new LatLon(0, -0.001)), connection)),
+                new RelationMember("via", connection),
+                new RelationMember("to", TestUtils.newWay("highway=primary lanes=2 oneway=yes", connection,
+                        new Node(new LatLon(0, 0.001)))));
+        dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        StringWriter out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.JSONL, out).validate("test.osm", dataSet, 5);
+
+        String[] lines = out.toString().split("\n");
+        boolean inconsistent = false;
+        for (int i = 0; i < lines.length - 1; i++) {
+            Assert.assertTrue(lines[i], lines[i].startsWith("{\"type\":\"issue\",\"file\":\"test.osm\""));
+            inconsistent |= lines[i].contains("\"code\":\"INCONSISTENT_LANE_COUNT\"")
+                    && lines[i].contains("\"relation\":" + relation.getUniqueId());
+        }
+        Assert.assertTrue(inconsistent);
+
+        String summary = lines[lines.length - 1];
+        Assert.assertTrue(summary, summary.startsWith("{\"type\":\"summary\",\"file\":\"test.osm\",\"relations\":1,"
+                + "\"issues\":" + (lines.length - 1) + ",\"loadMillis\":5,"));
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        StringWriter out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.CSV, out).validate("a,b.osm", dataSet, 0);
+
+        Assert.assertTrue(out.toString(), out.toString().contains(
+                "\"a,b.osm\",check,INCONSISTENT_LANE_COUNT,WARNING," + relation.getUniqueId() + ",r"));
+        Assert.assertTrue(out.toString(), out.toString().contains("\n\"a,b.osm\",summary,,,,,\"1 relations, "));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        // an invalid connectivity tag is reported, the other relations are still checked
+        relation.put("connectivity", "1:a");
+        Node connection = new Node(new LatLon(1, 0));
+        Relation other = TestUtils.newRelation("type=connectivity connectivity=3:1",
+                new RelationMember("from", TestUtils.newWay("highway=primary lanes=2 oneway=yes",
+                        new Node(new LatLon(1, -0.001)), connection)),
+                new RelationMember("via", connection),
+                new RelationMember("to", TestUtils.newWay("highway=primary lanes=2 oneway=yes", connection,
+                        new Node(new LatLon(1, 0.001)))));
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, other);
+
+        StringWriter out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.JSONL, out).validate("test.osm", dataSet, 0);
+
+        String report = out.toString();
+        Assert.assertTrue(report, report.contains("\"source\":\"check\",\"code\":\"UNEXPECTED_DATA\","
+                + "\"severity\":\"ERROR\",\"relation\":" + relation.getUniqueId()));
+        Assert.assertTrue(report, report.contains("\"code\":\"INCONSISTENT_LANE_COUNT\",\"severity\":\"WARNING\","
+                + "\"relation\":" + other.getUniqueId()));
+        Assert.assertTrue(report, report.contains("{\"type\":\"summary\",\"file\":\"test.osm\",\"relations\":2,"));
+    }
+
+    @Test
+    public void testUsage() {
+        Assert.assertEquals(2, BatchValidator.run(new String[0]));
+        Assert.assertEquals(2, BatchValidator.run(new String[] {"--unknown", "test.osm"}));
+        Assert.assertEquals(2, BatchValidator.run(new String[] {"--format", "xml", "test.osm"}));
+    }
+
+    @Test
+    public void testChange() throws Exception {
+        // a connectivity that doesn't match the lanes of the from way
+        OsmChange change = OsmChange.read(OsmChangeTest.source("<osmChange version='0.6'><modify>"
+                + "<relation id='20'><member type='way' ref='10' role='from'/>"
+                + "<member type='node' ref='2' role='via'/><member type='way' ref='11' role='to'/>"
+                + "<tag k='type' v='connectivity'/><tag k='connectivity' v='3:1'/></relation>"
+                + "</modify></osmChange>"));
+
+        StringWriter out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.JSONL, out).validate("test.osm",
+                OsmChangeTest.source(OsmChangeTest.BASE), change);
+
+        String[] lines = out.toString().split("\n");
+        boolean inconsistent = false;
+        for (int i = 0; i < lines.length - 1; i++) {
+            Assert.assertTrue(lines[i], lines[i].startsWith("{\"type\":\"issue\",\"file\":\"test.osm\","
+                    + "\"status\":\"introduced\""));
+            inconsistent |= lines[i].contains("\"code\":\"INCONSISTENT_LANE_COUNT\"")
+                    && lines[i].contains("\"relation\":20");
+        }
+        Assert.assertTrue(out.toString(), inconsistent);
+        Assert.assertTrue(lines[lines.length - 1], lines[lines.length - 1].startsWith(
+                "{\"type\":\"summary\",\"file\":\"test.osm\",\"relations\":1,\"introduced\":"
+                        + (lines.length - 1) + ",\"resolved\":0,"));
+
+        // and the other way around
+        String modified = OsmChangeTest.BASE.replace("v='1:1'", "v='3:1'");
+        change = OsmChange.read(OsmChangeTest.source("<osmChange version='0.6'><modify>"
+                + "<relation id='20'><member type='way' ref='10' role='from'/>"
+                + "<member type='node' ref='2' role='via'/><member type='way' ref='11' role='to'/>"
+                + "<tag k='type' v='connectivity'/><tag k='connectivity' v='1:1'/></relation>"
+                + "</modify></osmChange>"));
+        out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.CSV, out).validate("test.osm", OsmChangeTest.source(modified),
+                change);
+        Assert.assertTrue(out.toString(), out.toString().contains(
+                "test.osm,resolved,check,INCONSISTENT_LANE_COUNT,WARNING,20,r20"));
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        // the node isn't part of any relation, the issues of relation 20 aren't validated
+        OsmChange change = OsmChange.read(OsmChangeTest.source("<osmChange version='0.6'><create>"
+                + "<node id='-1' lat='1.0' lon='1.0'/></create></osmChange>"));
+
+        StringWriter out = new StringWriter();
+        new BatchValidator(BatchValidator.Format.JSONL, out).validate("test.osm",
+                OsmChangeTest.source(OsmChangeTest.BASE), change);
+
+        Assert.assertTrue(out.toString(), out.toString().startsWith(
+                "{\"type\":\"summary\",\"file\":\"test.osm\",\"relations\":0,\"introduced\":0,\"resolved\":0,"));
+    }
+
+    @Test
+    public void testEscaping() {
+        Assert.assertEquals("\"a\\\"b\\\\c\\n\\u0001\"", BatchValidator.json("a\"b\\c\n\u0001"));
+        Assert.assertEquals("null", BatchValidator.json(null));
+        Assert.assertEquals("plain", BatchValidator.csv("plain"));
+        Assert.assertEquals("\"say \"\"hi\"\", ok\"", BatchValidator.csv("say \"hi\", ok"));
+    }
+}
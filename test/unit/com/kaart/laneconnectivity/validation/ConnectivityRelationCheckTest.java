@@ -7,10 +7,13 @@ import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 
+import com.kaart.laneconnectivity.TestUtilsCustom;
+
 public class ConnectivityRelationCheckTest {
     private ConnectivityRelationCheck check;
     private static final String CONNECTIVITY = "connectivity";
@@ -74,6 +77,20 @@ public class ConnectivityRelationCheckTest {
         Assert.assertEquals(++expectedFailures, check.getErrors().size());
     }
 
+    @Test
+    public void testMissingLanes() {
+        Relation relation = createDefaultTestRelation();
+        relation.getMember(0).getMember().remove("lanes");
+        relation.getMember(2).getMember().put("lanes", "two");
+        check.visit(relation);
+        Assert.assertEquals(0, check.getErrors().size());
+
+        relation.getMember(2).getMember().put("lanes", "1");
+        relation.put(CONNECTIVITY, "1:2");
+        check.visit(relation);
+        Assert.assertEquals(1, check.getErrors().size());
+    }
+
     @Test
     public void testForBadRole() {
         Relation relation = createDefaultTestRelation();
@@ -92,6 +109,34 @@ public class ConnectivityRelationCheckTest {
         }
     }
 
+    @Test
+    public void testDuplicates() {
+        Relation relation = createDefaultTestRelation();
+        DataSet dataSet = new DataSet();
+        TestUtilsCustom.addPrimitivesToDataSet(dataSet, relation);
+        check.visit(relation);
+        Assert.assertEquals(0, check.getErrors().size());
+
+        Relation duplicate = TestUtils.newRelation("type=connectivity connectivity=2:2", relation.getMember(0),
+                relation.getMember(1), relation.getMember(2));
+        dataSet.addPrimitive(duplicate);
+        check.startTest(null);
+        check.visit(relation);
+        check.visit(duplicate);
+        Assert.assertEquals(1, check.getErrors().size());
+        Assert.assertEquals(2, check.getErrors().get(0).getPrimitives().size());
+
+        // a different via member is a different connection
+        duplicate.removeMember(1);
+        Node other = new Node(new LatLon(0.1, 0));
+        dataSet.addPrimitive(other);
+        duplicate.addMember(1, new RelationMember("via", other));
+        check.startTest(null);
+        check.visit(relation);
+        check.visit(duplicate);
+        Assert.assertEquals(0, check.getErrors().size());
+    }
+
     private static String replaceMember(Relation relation, int index, String replacementRole) {
         RelationMember relationMember = relation.getMember(index);
         String currentRole = relationMember.getRole();
@@ -0,0 +1,101 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+
+import com.kaart.laneconnectivity.validation.RelationLoader.Element;
+import com.kaart.laneconnectivity.validation.RelationLoader.Elements;
+
+public class OsmChangeTest {
+    static final String BASE = "<osm version='0.6'>\n"
+            + "  <node id='1' lat='0.0' lon='-0.001'/>\n"
+            + "  <node id='2' lat='0.0' lon='0.0'/>\n"
+            + "  <node id='3' lat='0.0' lon='0.001'/>\n"
+            + "  <node id='4' lat='0.001' lon='0.0'/>\n"
+            + "  <way id='10'><nd ref='1'/><nd ref='2'/>"
+            + "<tag k='highway' v='primary'/><tag k='lanes' v='2'/><tag k='oneway' v='yes'/></way>\n"
+            + "  <way id='11'><nd ref='2'/><nd ref='3'/>"
+            + "<tag k='highway' v='primary'/><tag k='lanes' v='2'/><tag k='oneway' v='yes'/></way>\n"
+            + "  <way id='12'><nd ref='2'/><nd ref='4'/>"
+            + "<tag k='highway' v='primary'/><tag k='lanes' v='2'/><tag k='oneway' v='yes'/></way>\n"
+            + "  <relation id='20'><member type='way' ref='10' role='from'/>"
+            + "<member type='node' ref='2' role='via'/><member type='way' ref='11' role='to'/>"
+            + "<tag k='type' v='connectivity'/><tag k='connectivity' v='1:1'/></relation>\n"
+            + "</osm>\n";
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    static RelationLoader.Source source(String xml) {
+        return () -> new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testApply() throws Exception {
+        OsmChange change = OsmChange.read(source("<osmChange version='0.6'>"
+                + "<modify><node id='3' lat='0.0' lon='0.002'/></modify>"
+                + "<create><relation id='-1'><member type='way' ref='10' role='from'/>"
+                + "<member type='node' ref='2' role='via'/><member type='way' ref='12' role='to'/>"
+                + "<tag k='type' v='connectivity'/><tag k='connectivity' v='2:1'/></relation></create>"
+                + "<delete><relation id='20'/></delete>"
+                + "</osmChange>"));
+
+        // way 12 isn't a member in the base file, but it is in the change
+        Assert.assertEquals(new HashSet<>(Arrays.asList(10L, 12L)), change.getWays());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(2L)), change.getNodes());
+
+        Elements base = RelationLoader.read(source(BASE), change.getWays(), change.getNodes());
+        Assert.assertEquals(3, base.ways.size());
+
+        DataSet before = RelationLoader.build(base, new HashMap<>());
+        List<OsmPrimitive> changedBefore = change.getPrimitives(before);
+        Assert.assertEquals(2, changedBefore.size());
+        Assert.assertTrue(changedBefore.contains(before.getPrimitiveById(20, OsmPrimitiveType.RELATION)));
+        Assert.assertTrue(changedBefore.contains(before.getPrimitiveById(3, OsmPrimitiveType.NODE)));
+
+        Map<Element, OsmPrimitive> primitives = new HashMap<>();
+        DataSet after = RelationLoader.build(change.apply(base), primitives);
+        Assert.assertNull(after.getPrimitiveById(20, OsmPrimitiveType.RELATION));
+        List<OsmPrimitive> changedAfter = change.getPrimitives(primitives);
+        Assert.assertEquals(2, changedAfter.size());
+        Relation created = (Relation) changedAfter.get(1);
+        Assert.assertEquals("2:1", created.get("connectivity"));
+        Assert.assertSame(after.getPrimitiveById(12, OsmPrimitiveType.WAY), created.getMember(2).getMember());
+        Assert.assertFalse(created.hasIncompleteMembers());
+    }
+
+    @Test
+    public void testLastActionWins() throws Exception {
+        OsmChange change = OsmChange.read(source("<osmChange version='0.6'>"
+                + "<create><node id='-5' lat='1.0' lon='1.0'/></create>"
+                + "<delete><node id='-5'/></delete>"
+                + "</osmChange>"));
+
+        Map<Element, OsmPrimitive> primitives = new HashMap<>();
+        RelationLoader.build(change.apply(RelationLoader.read(source(BASE), change.getWays(), change.getNodes())),
+                primitives);
+        Assert.assertTrue(change.getPrimitives(primitives).isEmpty());
+    }
+}
@@ -0,0 +1,108 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.laneconnectivity.validation;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+public class RelationLoaderTest {
+    private static final String OSM = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version='0.6'>\n"
+            + "  <node id='1' version='2' lat='0.0' lon='-0.001'/>\n"
+            + "  <node id='2' version='1' lat='0.0' lon='0.0'><tag k='highway' v='traffic_signals'/></node>\n"
+            + "  <node id='3' version='1' lat='0.0' lon='0.001'/>\n"
+            + "  <node id='4' version='1' lat='1.0' lon='1.0'/>\n"
+            + "  <node id='5' version='1' lat='1.0' lon='1.001'/>\n"
+            + "  <way id='10' version='1'><nd ref='1'/><nd ref='2'/>"
+            + "<tag k='highway' v='primary'/><tag k='lanes' v='2'/></way>\n"
+            + "  <way id='11' version='1'><nd ref='2'/><nd ref='3'/><tag k='highway' v='primary'/></way>\n"
+            + "  <way id='12' version='1'><nd ref='4'/><nd ref='5'/><tag k='highway' v='residential'/></way>\n"
+            + "  <way id='13' version='1'><nd ref='3'/><nd ref='99'/><tag k='highway' v='primary'/></way>\n"
+            + "  <relation id='20' version='3'><member type='way' ref='10' role='from'/>"
+            + "<member type='node' ref='2' role='via'/><member type='way' ref='11' role='to'/>"
+            + "<tag k='type' v='connectivity'/><tag k='connectivity' v='1:1'/></relation>\n"
+            + "  <relation id='21' version='1'><member type='way' ref='11' role='from'/>"
+            + "<member type='way' ref='13' role='to'/><member type='way' ref='14' role='to'/>"
+            + "<tag k='type' v='connectivity'/></relation>\n"
+            + "  <relation id='22' version='1'><member type='way' ref='12' role='outer'/>"
+            + "<tag k='type' v='multipolygon'/></relation>\n"
+            + "</osm>\n";
+
+    /**
+     * Setup test.
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static DataSet load(String osm) throws Exception {
+        return RelationLoader.load(() -> new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        DataSet dataSet = load(OSM);
+
+        Relation connectivity = (Relation) dataSet.getPrimitiveById(20, OsmPrimitiveType.RELATION);
+        Assert.assertNotNull(connectivity);
+        Assert.assertEquals(3, connectivity.getVersion());
+        Assert.assertEquals("1:1", connectivity.get("connectivity"));
+        Assert.assertEquals(3, connectivity.getMembersCount());
+        Assert.assertEquals("via", connectivity.getMember(1).getRole());
+        Assert.assertFalse(connectivity.hasIncompleteMembers());
+
+        Way from = (Way) dataSet.getPrimitiveById(10, OsmPrimitiveType.WAY);
+        Assert.assertEquals("2", from.get("lanes"));
+        Assert.assertEquals(2, from.getNodesCount());
+        Node first = from.firstNode();
+        Assert.assertEquals(1, first.getId());
+        Assert.assertEquals(2, first.getVersion());
+        Assert.assertEquals(-0.001, first.lon(), 1e-9);
+        Assert.assertSame(connectivity.getMember(1).getMember(), from.lastNode());
+
+        // only the relations to validate and their members
+        Assert.assertNull(dataSet.getPrimitiveById(22, OsmPrimitiveType.RELATION));
+        Assert.assertNull(dataSet.getPrimitiveById(12, OsmPrimitiveType.WAY));
+        Assert.assertNull(dataSet.getPrimitiveById(4, OsmPrimitiveType.NODE));
+    }
+
+    @Test
+    public void testIncomplete() throws Exception {
+        DataSet dataSet = load(OSM);
+
+        Relation relation = (Relation) dataSet.getPrimitiveById(21, OsmPrimitiveType.RELATION);
+        Assert.assertEquals(3, relation.getMembersCount());
+        Assert.assertTrue(relation.hasIncompleteMembers());
+        // a node outside of the file
+        Assert.assertTrue(dataSet.getPrimitiveById(13, OsmPrimitiveType.WAY).isIncomplete());
+        // a way outside of the file
+        Assert.assertTrue(dataSet.getPrimitiveById(14, OsmPrimitiveType.WAY).isIncomplete());
+        Assert.assertFalse(dataSet.getPrimitiveById(11, OsmPrimitiveType.WAY).isIncomplete());
+    }
+
+    @Test
+    public void testNoRelations() throws Exception {
+        DataSet dataSet = load("<osm version='0.6'><node id='1' lat='0' lon='0'/></osm>");
+
+        Assert.assertTrue(dataSet.allPrimitives().isEmpty());
+    }
+
+    @Test(expected = IllegalDataException.class)
+    public void testMissingAttribute() throws Exception {
+        load("<osm version='0.6'><relation id='1'><member type='way' role='from'/>"
+                + "<tag k='type' v='connectivity'/></relation></osm>");
+    }
+}